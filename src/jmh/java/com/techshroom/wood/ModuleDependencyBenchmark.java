@@ -0,0 +1,81 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModuleDependencyBenchmark {
+
+    @Param({ "core", "core:*", "core:[1.0.0,2.0.0)", "core:(1.0.0-alpha,10.20.30-rc.1]" })
+    public String dependency;
+
+    private ModuleDependency parsed;
+    private SemVer candidate;
+
+    @Setup
+    public void setUp() {
+        this.parsed = ModuleDependency.fromString(this.dependency);
+        this.candidate = SemVer.fromString("1.5.0");
+    }
+
+    @Benchmark
+    public ModuleDependency fromStringInterned() {
+        return ModuleDependency.fromString(this.dependency);
+    }
+
+    @Benchmark
+    public ModuleDependency parse() {
+        return ModuleDependency.parse(this.dependency);
+    }
+
+    @Benchmark
+    public boolean rangeContains() {
+        return this.parsed.getVersionRange().contains(this.candidate);
+    }
+
+    @Benchmark
+    public boolean matcherMatches() {
+        return this.parsed.getVersionMatcher().matches(this.candidate);
+    }
+
+}
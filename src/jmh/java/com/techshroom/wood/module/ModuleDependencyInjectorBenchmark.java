@@ -0,0 +1,88 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.techshroom.wood.module.AbstractModule.Meta;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModuleDependencyInjectorBenchmark {
+
+    @Meta(id = "a", name = "A", version = "1.0.0")
+    public static final class A extends AbstractModule {
+    }
+
+    @Meta(id = "b", name = "B", version = "1.0.0")
+    public static final class B extends AbstractModule {
+    }
+
+    @Meta(id = "target", name = "Target", version = "1.0.0", required = { "a", "b" })
+    public static final class Target extends AbstractModule {
+
+        @Dependency("a")
+        private final A a = null;
+
+        @Dependency("b")
+        private final B b = null;
+
+        private final String unrelated = "not injected";
+
+    }
+
+    private Module target;
+    private Map<String, Module> modules;
+
+    @Setup
+    public void setUp() {
+        this.target = new Target();
+        this.modules = ImmutableMap.of("a", new A(), "b", new B(), "target", this.target);
+    }
+
+    @Benchmark
+    public Module inject() {
+        ModuleDependencyInjector.inject(this.target, this.modules);
+        return this.target;
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.techshroom.wood.ModuleDependency;
+import com.techshroom.wood.SemVer;
+import com.techshroom.wood.module.SyntheticModuleGraphs.Shape;
+
+/**
+ * End-to-end startup benchmark. Generates plugin jars holding
+ * {@link AbstractModule} subclasses and their service entries, then times
+ * {@link ModuleLoader#load()} in freshly forked JVMs, so class loading and
+ * {@link java.util.ServiceLoader} costs are included.
+ * <p>
+ * Options: {@code --jars N}, {@code --modules-per-jar N},
+ * {@code --shape SHAPE}, {@code --seed N}, {@code --forks N}. The forked JVMs
+ * use the {@code startup.classpath} system property as their classpath, which
+ * should hold the main classes and the probe but no other modules.
+ * </p>
+ */
+public final class StartupBenchmark {
+
+    private static final String SERVICE_FILE = "META-INF/services/" + Module.class.getName();
+    private static final String PACKAGE = "bench/startup/";
+    private static final String[] PHASES = { "discovery", "solve", "inject", "pre-init", "init", "jvm-to-loaded" };
+
+    public static void main(String[] args) throws Exception {
+        int jars = 100;
+        int modulesPerJar = 1;
+        Shape shape = Shape.RANDOM_DAG;
+        long seed = 0x5EED;
+        int forks = 5;
+        for (int i = 0; i < args.length; i += 2) {
+            checkArgument(i + 1 < args.length, "missing value for %s", args[i]);
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--jars":
+                    jars = Integer.parseInt(value);
+                    break;
+                case "--modules-per-jar":
+                    modulesPerJar = Integer.parseInt(value);
+                    break;
+                case "--shape":
+                    shape = Shape.valueOf(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--forks":
+                    forks = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        checkArgument(shape != Shape.CYCLIC, "cyclic graphs cannot be loaded");
+
+        Path dir = Files.createTempDirectory("startup-benchmark");
+        try {
+            List<Path> jarFiles =
+                    writeJars(dir, SyntheticModuleGraphs.generate(shape, jars * modulesPerJar, seed), modulesPerJar);
+            System.out.println(String.format("%d jars, %d modules per jar, %s, %d forks", jars, modulesPerJar, shape,
+                    forks));
+            long[][] samples = new long[PHASES.length][forks];
+            for (int fork = 0; fork < forks; fork++) {
+                long[] result = fork(jarFiles, jars * modulesPerJar);
+                for (int phase = 0; phase < PHASES.length; phase++) {
+                    samples[phase][fork] = result[phase];
+                }
+            }
+            System.out.println(String.format("%-14s %10s %10s %10s", "phase", "min ms", "median ms", "max ms"));
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                long[] values = samples[phase];
+                Arrays.sort(values);
+                System.out.println(String.format("%-14s %10.2f %10.2f %10.2f", PHASES[phase], values[0] / 1e6,
+                        values[values.length / 2] / 1e6, values[values.length - 1] / 1e6));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static long[] fork(List<Path> jarFiles, int expectedModules) throws IOException, InterruptedException {
+        StringBuilder classpath =
+                new StringBuilder(System.getProperty("startup.classpath", System.getProperty("java.class.path")));
+        for (Path jar : jarFiles) {
+            classpath.append(File.pathSeparatorChar).append(jar);
+        }
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-cp", classpath.toString(),
+                StartupProbe.class.getName()).redirectErrorStream(true).start();
+        long[] result = null;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader =
+                new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.add(line);
+                if (line.startsWith(StartupProbe.PREFIX + ' ')) {
+                    String[] parts = line.split(" ");
+                    checkState(Integer.parseInt(parts[1]) == expectedModules, "probe loaded %s of %s modules",
+                            parts[1], expectedModules);
+                    result = Stream.of(parts).skip(2).mapToLong(Long::parseLong).toArray();
+                }
+            }
+        }
+        int exit = process.waitFor();
+        if (exit != 0 || result == null) {
+            throw new IllegalStateException("probe failed with exit code " + exit + ":\n" + String.join("\n", output));
+        }
+        return result;
+    }
+
+    private static List<Path> writeJars(Path dir, ImmutableList<Module> modules, int modulesPerJar)
+            throws IOException {
+        List<Path> jars = new ArrayList<>();
+        for (int start = 0; start < modules.size(); start += modulesPerJar) {
+            Path jar = dir.resolve("plugin" + jars.size() + ".jar");
+            List<Module> contents = modules.subList(start, Math.min(modules.size(), start + modulesPerJar));
+            StringBuilder services = new StringBuilder();
+            try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+                for (Module module : contents) {
+                    String className = PACKAGE + module.getMetadata().getId();
+                    jarOut.putNextEntry(new JarEntry(className + ".class"));
+                    jarOut.write(generateModuleClass(className, module.getMetadata()));
+                    jarOut.closeEntry();
+                    services.append(className.replace('/', '.')).append('\n');
+                }
+                jarOut.putNextEntry(new JarEntry(SERVICE_FILE));
+                jarOut.write(services.toString().getBytes(StandardCharsets.UTF_8));
+                jarOut.closeEntry();
+            }
+            jars.add(jar);
+        }
+        return jars;
+    }
+
+    /**
+     * Generates an {@link AbstractModule} subclass with a {@code @Meta}
+     * annotation matching {@code meta}, and a {@code @Dependency} field for
+     * each required module.
+     */
+    private static byte[] generateModuleClass(String className, ModuleMetadata meta) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null,
+                Type.getInternalName(AbstractModule.class), null);
+
+        AnnotationVisitor annotation = cw.visitAnnotation(Type.getDescriptor(AbstractModule.Meta.class), true);
+        annotation.visit("id", meta.getId());
+        annotation.visit("name", meta.getName());
+        annotation.visit("version", meta.getVersion().toString());
+        visitDependencies(annotation, "required", meta.getRequiredModules());
+        visitDependencies(annotation, "loadAfter", meta.getLoadAfterModules());
+        visitDependencies(annotation, "loadBefore", meta.getLoadBeforeModules());
+        annotation.visitEnd();
+
+        Set<String> requiredIds = new LinkedHashSet<>();
+        meta.getRequiredModules().forEach(dep -> requiredIds.add(dep.getId()));
+        for (String id : requiredIds) {
+            FieldVisitor field = cw.visitField(Opcodes.ACC_PRIVATE, "dep_" + id, Type.getDescriptor(Module.class),
+                    null, null);
+            AnnotationVisitor dependency = field.visitAnnotation(Type.getDescriptor(Dependency.class), true);
+            dependency.visit("value", id);
+            dependency.visitEnd();
+            field.visitEnd();
+        }
+
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(AbstractModule.class), "<init>", "()V",
+                false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void visitDependencies(AnnotationVisitor annotation, String name, Set<ModuleDependency> deps) {
+        AnnotationVisitor array = annotation.visitArray(name);
+        for (ModuleDependency dep : deps) {
+            array.visit(null, dep.getId() + ':' + toRangeString(dep.getVersionRange()));
+        }
+        array.visitEnd();
+    }
+
+    /**
+     * Formats a range in the syntax {@link ModuleDependency#fromString}
+     * accepts.
+     */
+    private static String toRangeString(Range<SemVer> range) {
+        StringBuilder builder = new StringBuilder();
+        if (range.hasLowerBound()) {
+            builder.append(range.lowerBoundType() == BoundType.CLOSED ? '[' : '(').append(range.lowerEndpoint());
+        } else {
+            builder.append('(');
+        }
+        builder.append(',');
+        if (range.hasUpperBound()) {
+            builder.append(range.upperEndpoint()).append(range.upperBoundType() == BoundType.CLOSED ? ']' : ')');
+        } else {
+            builder.append(')');
+        }
+        return builder.toString();
+    }
+
+    private StartupBenchmark() {
+    }
+
+}
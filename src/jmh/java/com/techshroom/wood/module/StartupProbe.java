@@ -0,0 +1,52 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs in the JVM forked by {@link StartupBenchmark}. Loads every module on
+ * the classpath once and prints the phase timings on a single line.
+ */
+public final class StartupProbe {
+
+    static final String PREFIX = "startup-timings";
+
+    public static void main(String[] args) {
+        ModuleLoader.load();
+        // JVM start to loaded, including the loader's own class loading
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        LoadTimings timings = ModuleLoader.getLoadTimings()
+                .orElseThrow(() -> new IllegalStateException("ModuleLoader did not record timings"));
+        System.out.println(String.join(" ", PREFIX, String.valueOf(timings.getModuleCount()),
+                String.valueOf(timings.getDiscovery().toNanos()), String.valueOf(timings.getSolve().toNanos()),
+                String.valueOf(timings.getInject().toNanos()), String.valueOf(timings.getPreInit().toNanos()),
+                String.valueOf(timings.getInit().toNanos()), String.valueOf(uptimeMillis * 1_000_000)));
+    }
+
+    private StartupProbe() {
+    }
+
+}
@@ -25,20 +25,56 @@
 package com.techshroom.wood;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 
 /**
- * Code point reader and line number tracker.
+ * Code point reader and line number tracker. Input is read and decoded in
+ * chunks, then scanned out of a char array.
  */
 final class CPLineReader {
 
+    private static final int BUFFER_SIZE = 8192;
+
     private final Reader charSource;
+    private final InputStream byteSource;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final char[] buffer = this.chars.array();
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private boolean bytesDone;
+    private boolean decoderFlushed;
+    // decoding failed after the chars currently in the buffer
+    private boolean malformedInput;
     private int lineNumber = 0;
-    private int codeUnit;
 
-    public CPLineReader(Reader charSource) throws IOException {
+    public CPLineReader(Reader charSource) {
         this.charSource = charSource;
-        this.codeUnit = charSource.read();
+        this.byteSource = null;
+        this.decoder = null;
+        this.bytes = null;
+    }
+
+    /**
+     * Reads from a byte stream, decoding it as UTF-8. Malformed input is
+     * reported as an error, not replaced.
+     */
+    public CPLineReader(InputStream byteSource) {
+        this.charSource = null;
+        this.byteSource = byteSource;
+        this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        this.bytes.flip();
     }
 
     public String errorFormatString() {
@@ -61,27 +97,126 @@ final class CPLineReader {
         return cp;
     }
 
+    /**
+     * Appends everything up to the next {@code '\n'} to the builder, and
+     * consumes the {@code '\n'}.
+     * 
+     * @return {@code true} if a {@code '\n'} ended the line, {@code false} if
+     *         the input ended first
+     */
+    public boolean appendLine(StringBuilder builder) throws IOException {
+        while (this.position < this.limit || fill()) {
+            char[] buf = this.buffer;
+            int start = this.position;
+            int end = this.limit;
+            for (int i = start; i < end; i++) {
+                if (buf[i] == '\n') {
+                    builder.append(buf, start, i - start);
+                    this.position = i + 1;
+                    this.lineNumber++;
+                    return true;
+                }
+            }
+            builder.append(buf, start, end - start);
+            this.position = end;
+        }
+        return false;
+    }
+
+    /**
+     * Skips everything up to and including the next {@code '\n'}.
+     */
+    public void skipLine() throws IOException {
+        while (this.position < this.limit || fill()) {
+            char[] buf = this.buffer;
+            for (int i = this.position, end = this.limit; i < end; i++) {
+                if (buf[i] == '\n') {
+                    this.position = i + 1;
+                    this.lineNumber++;
+                    return;
+                }
+            }
+            this.position = this.limit;
+        }
+    }
+
     private int getNextCodePoint() throws IOException {
-        if (this.codeUnit == -1) {
+        if (this.position == this.limit && !fill()) {
             return -1;
         }
-        try {
-            char high = (char) this.codeUnit;
-            if (Character.isHighSurrogate(high)) {
-                int next = this.charSource.read();
-                if (next == -1) {
-                    throw new IOException("malformed character");
-                }
-                char low = (char) next;
-                if (!Character.isLowSurrogate(low)) {
-                    throw new IOException("malformed sequence");
+        char high = this.buffer[this.position++];
+        if (Character.isHighSurrogate(high)) {
+            if (this.position == this.limit && !fill()) {
+                throw new IOException("malformed character");
+            }
+            char low = this.buffer[this.position++];
+            if (!Character.isLowSurrogate(low)) {
+                throw new IOException("malformed sequence");
+            }
+            return Character.toCodePoint(high, low);
+        }
+        return high;
+    }
+
+    /**
+     * Refills the buffer.
+     * 
+     * @return {@code false} if there is no more input
+     */
+    private boolean fill() throws IOException {
+        this.position = 0;
+        this.limit = 0;
+        if (this.malformedInput) {
+            throw new IOException(formatError("malformed UTF-8 input"));
+        }
+        if (this.endOfInput) {
+            return false;
+        }
+        int read = this.charSource != null ? this.charSource.read(this.buffer) : decode();
+        if (read <= 0) {
+            this.endOfInput = true;
+            // an error right at the end may have been found with no chars
+            if (this.malformedInput) {
+                throw new IOException(formatError("malformed UTF-8 input"));
+            }
+            return false;
+        }
+        this.limit = read;
+        return true;
+    }
+
+    private int decode() throws IOException {
+        CharBuffer out = this.chars;
+        out.clear();
+        if (this.decoderFlushed) {
+            return 0;
+        }
+        while (true) {
+            if (!this.bytesDone) {
+                this.bytes.compact();
+                int read = this.byteSource.read(this.bytes.array(),
+                        this.bytes.arrayOffset() + this.bytes.position(), this.bytes.remaining());
+                if (read < 0) {
+                    this.bytesDone = true;
+                } else {
+                    this.bytes.position(this.bytes.position() + read);
                 }
-                return Character.toCodePoint(high, low);
-            } else {
-                return this.codeUnit;
+                this.bytes.flip();
+            }
+            CoderResult result = this.decoder.decode(this.bytes, out, this.bytesDone);
+            if (this.bytesDone && result.isUnderflow()) {
+                result = this.decoder.flush(out);
+                this.decoderFlushed = result.isUnderflow();
+            }
+            if (result.isError()) {
+                // Hand out what was decoded, report when it's used up
+                this.malformedInput = true;
+                break;
+            }
+            if (this.decoderFlushed || out.position() > 0) {
+                break;
             }
-        } finally {
-            this.codeUnit = this.charSource.read();
         }
+        return out.position();
     }
 }
\ No newline at end of file
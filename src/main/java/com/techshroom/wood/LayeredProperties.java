@@ -0,0 +1,232 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+
+/**
+ * A read-only view over several {@link UTF8Properties} layers, such as
+ * defaults, per-environment files and overrides. Lookups go through the
+ * layers from highest to lowest precedence, no values are copied.
+ * <p>
+ * Values are read from the layers on every lookup, so changed and removed
+ * values show up in this view. The keys are merged once, when the view is
+ * created; create a new view after adding keys to a layer.
+ * </p>
+ */
+public final class LayeredProperties extends AbstractMap<String, String> {
+
+    /**
+     * Creates a view over the given layers.
+     * 
+     * @param layers
+     *            - The layers, lowest precedence first
+     */
+    public static LayeredProperties of(List<UTF8Properties> layers) {
+        return new LayeredProperties(ImmutableList.copyOf(layers));
+    }
+
+    /**
+     * Loads each file into its own layer, all at the same time.
+     * 
+     * @param files
+     *            - The files, lowest precedence first
+     * @param executor
+     *            - The executor to load files on
+     * @throws IOException
+     *             if any file fails to load, with every error attached as a
+     *             suppressed exception
+     */
+    public static LayeredProperties load(List<Path> files, Executor executor) throws IOException {
+        List<CompletableFuture<UTF8Properties>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try (InputStream stream = Files.newInputStream(file)) {
+                    return new UTF8Properties().load(stream);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        List<UTF8Properties> layers = new ArrayList<>(files.size());
+        IOException error = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                layers.add(futures.get(i).join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                Throwables.throwIfInstanceOf(cause, Error.class);
+                if (error == null) {
+                    error = new IOException("Failed to load properties layers");
+                }
+                error.addSuppressed(new IOException("Failed to load " + files.get(i), cause));
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return of(layers);
+    }
+
+    private final ImmutableList<UTF8Properties> layers;
+    private final ImmutableList<UTF8Properties> highestFirst;
+    // Every key the layers had at creation, some may have been removed since
+    private final ImmutableSet<String> keys;
+    private Set<String> keySet;
+    private Set<Map.Entry<String, String>> entrySet;
+
+    private LayeredProperties(ImmutableList<UTF8Properties> layers) {
+        checkArgument(!layers.isEmpty(), "at least one layer is required");
+        this.layers = layers;
+        this.highestFirst = layers.reverse();
+        ImmutableSet.Builder<String> keys = ImmutableSet.builder();
+        layers.forEach(layer -> keys.addAll(layer.keySet()));
+        this.keys = keys.build();
+    }
+
+    /**
+     * @return the layers, lowest precedence first
+     */
+    public ImmutableList<UTF8Properties> getLayers() {
+        return this.layers;
+    }
+
+    @Override
+    public String get(Object key) {
+        UTF8Properties layer = getSupplyingLayer(key);
+        return layer == null ? null : layer.get(key);
+    }
+
+    /**
+     * Gets the javadoc for the given key from the layer that supplies its
+     * value.
+     * 
+     * @return the javadoc, or {@code null} if that layer has none or no layer
+     *         has the key
+     */
+    @Nullable
+    public String getJavadoc(String key) {
+        UTF8Properties layer = getSupplyingLayer(key);
+        return layer == null ? null : layer.getJavadoc(key);
+    }
+
+    @Nullable
+    private UTF8Properties getSupplyingLayer(Object key) {
+        if (!this.keys.contains(key)) {
+            return null;
+        }
+        for (UTF8Properties layer : this.highestFirst) {
+            if (layer.containsKey(key)) {
+                return layer;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getSupplyingLayer(key) != null;
+    }
+
+    @Override
+    public int size() {
+        // Keys may have been removed from every layer
+        return Iterators.size(entrySet().iterator());
+    }
+
+    @Override
+    public Set<String> keySet() {
+        Set<String> keySet = this.keySet;
+        if (keySet == null) {
+            this.keySet = keySet = new AbstractSet<String>() {
+
+                @Override
+                public Iterator<String> iterator() {
+                    return Iterators.filter(LayeredProperties.this.keys.iterator(),
+                            LayeredProperties.this::containsKey);
+                }
+
+                @Override
+                public boolean contains(Object key) {
+                    return containsKey(key);
+                }
+
+                @Override
+                public int size() {
+                    return LayeredProperties.this.size();
+                }
+
+            };
+        }
+        return keySet;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        Set<Map.Entry<String, String>> entries = this.entrySet;
+        if (entries == null) {
+            this.entrySet = entries = new AbstractSet<Map.Entry<String, String>>() {
+
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    Iterator<Map.Entry<String, String>> entries = Iterators.transform(
+                            LayeredProperties.this.keys.iterator(), key -> new SimpleImmutableEntry<>(key, get(key)));
+                    return Iterators.filter(entries, entry -> entry.getValue() != null);
+                }
+
+                @Override
+                public int size() {
+                    return LayeredProperties.this.size();
+                }
+
+            };
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,514 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+import javax.annotation.Nullable;
+
+/**
+ * A read-only, memory-mapped view of a {@link UTF8Properties} file. Opening
+ * the file makes one pass over the mapped bytes, decoding only the keys and
+ * indexing where each value and javadoc comment lives. Values are decoded the
+ * first time they are read, then kept.
+ * <p>
+ * The whole file is checked when it is mapped, so reading a value never
+ * fails because of the file's contents. Entries iterate in file order.
+ * </p>
+ * <p>
+ * The file must not be modified while it is mapped. Files over 2GB are not
+ * supported. {@link #close() Closing} drops the mapping, which the JVM
+ * releases once it is garbage collected; Java has no safe way to unmap it
+ * sooner.
+ * </p>
+ */
+public final class MappedUTF8Properties extends AbstractMap<String, String> implements Closeable {
+
+    private static final int NO_JAVADOC = -1;
+    private static final int NO_ENTRY = -1;
+
+    private static final ThreadLocal<CharsetDecoder> DECODER =
+            ThreadLocal.withInitial(() -> StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT));
+
+    /**
+     * Maps the given file and indexes its entries.
+     * 
+     * @param file
+     *            - The properties file
+     * @throws IOException
+     *             if the file can't be mapped, or is not a valid properties
+     *             file. This includes malformed UTF-8 anywhere in the file.
+     */
+    public static MappedUTF8Properties map(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new MappedUTF8Properties(buffer);
+    }
+
+    /**
+     * A single pass over the file, mirroring the state machine in
+     * {@link UTF8Properties}.
+     */
+    private static final class Indexer {
+
+        private final ByteBuffer buffer;
+        private final int limit;
+        private int position;
+        private int lineNumber;
+        private int javadocStart = NO_JAVADOC;
+        private int javadocEnd = NO_JAVADOC;
+
+        private int count;
+        private String[] keys = new String[16];
+        private int[] valueStarts = new int[16];
+        private int[] valueEnds = new int[16];
+        private int[] javadocStarts = new int[16];
+        private int[] javadocEnds = new int[16];
+
+        Indexer(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+        }
+
+        private String formatError(String error) {
+            return "On line " + this.lineNumber + ": " + error;
+        }
+
+        private int nextByte() {
+            int b = this.buffer.get(this.position++) & 0xFF;
+            if (b == '\n') {
+                this.lineNumber++;
+            }
+            return b;
+        }
+
+        /**
+         * Reads one code point, rejecting everything a reporting UTF-8
+         * decoder would, so values can later be decoded without errors.
+         */
+        private int nextCodePoint() throws IOException {
+            int b = nextByte();
+            if (b < 0x80) {
+                return b;
+            }
+            int extra;
+            int cp;
+            int min;
+            if ((b & 0xE0) == 0xC0) {
+                extra = 1;
+                cp = b & 0x1F;
+                min = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                extra = 2;
+                cp = b & 0x0F;
+                min = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                extra = 3;
+                cp = b & 0x07;
+                min = 0x10000;
+            } else {
+                throw new IOException(formatError("malformed UTF-8 input"));
+            }
+            for (int i = 0; i < extra; i++) {
+                if (this.position == this.limit) {
+                    throw new IOException(formatError("malformed UTF-8 input"));
+                }
+                int next = this.buffer.get(this.position++) & 0xFF;
+                if ((next & 0xC0) != 0x80) {
+                    throw new IOException(formatError("malformed UTF-8 input"));
+                }
+                cp = (cp << 6) | (next & 0x3F);
+            }
+            // Overlong forms, surrogates and values past the last code point
+            if (cp < min || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)
+                    || cp > Character.MAX_CODE_POINT) {
+                throw new IOException(formatError("malformed UTF-8 input"));
+            }
+            return cp;
+        }
+
+        private void index() throws IOException {
+            while (this.position < this.limit) {
+                int b = this.buffer.get(this.position) & 0xFF;
+                if (b == '/') {
+                    this.position++;
+                    readComment();
+                } else {
+                    readEntry();
+                }
+            }
+        }
+
+        private void readComment() throws IOException {
+            checkNotEnd();
+            int b = nextByte();
+            if (b == '/') {
+                // A double-slash single-line comment
+                // Read until \n or EOF
+                while (this.position < this.limit && nextCodePoint() != '\n') {
+                }
+            } else if (b == '*') {
+                checkNotEnd();
+                if (nextByte() == '*') {
+                    readJavadoc();
+                } else {
+                    // Regular comment, discard until "*/"
+                    boolean seenStar = false;
+                    while (this.position < this.limit) {
+                        int c = nextCodePoint();
+                        if (c == '*') {
+                            seenStar = true;
+                        } else if (c == '/' && seenStar) {
+                            return;
+                        } else {
+                            seenStar = false;
+                        }
+                    }
+                    throw new IOException(formatError("missing \"*/\" for multi-line comment"));
+                }
+            } else {
+                // Invalid, we don't support / as a key.
+                throw new IOException(formatError("Invalid comment"));
+            }
+        }
+
+        private void readJavadoc() throws IOException {
+            int start = this.position;
+            boolean potentialClose = false;
+            while (this.position < this.limit) {
+                int c = nextCodePoint();
+                if (potentialClose) {
+                    if (c == '/') {
+                        // Javadoc closed, the star before this is not part of it
+                        this.javadocStart = start;
+                        this.javadocEnd = this.position - 2;
+                        return;
+                    }
+                    // Javadoc didn't close, just a regular *
+                    potentialClose = false;
+                } else if (c == '*') {
+                    potentialClose = true;
+                }
+            }
+            checkNotEnd();
+        }
+
+        private void readEntry() throws IOException {
+            int keyStart = this.position;
+            int cp = nextCodePoint();
+            if (!Character.isJavaIdentifierStart(cp)) {
+                throw new IOException(
+                        formatError(String.valueOf(Character.toChars(cp)) + " is an invalid key starting character"));
+            }
+            while (true) {
+                checkNotEnd();
+                int keyEnd = this.position;
+                cp = nextCodePoint();
+                if (cp == '=') {
+                    String key = decode(this.buffer, keyStart, keyEnd);
+                    int valueStart = this.position;
+                    int valueEnd = this.limit;
+                    while (this.position < this.limit) {
+                        if (nextCodePoint() == '\n') {
+                            valueEnd = this.position - 1;
+                            break;
+                        }
+                    }
+                    addEntry(key, valueStart, valueEnd);
+                    return;
+                } else if (!Character.isJavaIdentifierPart(cp)) {
+                    throw new IOException(
+                            formatError(String.valueOf(Character.toChars(cp)) + " is an invalid key character"));
+                }
+            }
+        }
+
+        private void checkNotEnd() throws IOException {
+            if (this.position == this.limit) {
+                throw new IOException(formatError("invalid properties file"));
+            }
+        }
+
+        private void addEntry(String key, int valueStart, int valueEnd) {
+            if (this.count == this.valueStarts.length) {
+                int newLength = this.count * 2;
+                this.keys = Arrays.copyOf(this.keys, newLength);
+                this.valueStarts = Arrays.copyOf(this.valueStarts, newLength);
+                this.valueEnds = Arrays.copyOf(this.valueEnds, newLength);
+                this.javadocStarts = Arrays.copyOf(this.javadocStarts, newLength);
+                this.javadocEnds = Arrays.copyOf(this.javadocEnds, newLength);
+            }
+            int entry = this.count++;
+            this.keys[entry] = key;
+            this.valueStarts[entry] = valueStart;
+            this.valueEnds[entry] = valueEnd;
+            // Like UTF8Properties, a javadoc applies only to the next entry
+            this.javadocStarts[entry] = this.javadocStart;
+            this.javadocEnds[entry] = this.javadocEnd;
+            this.javadocStart = NO_JAVADOC;
+            this.javadocEnd = NO_JAVADOC;
+        }
+
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(end).position(start);
+        try {
+            return DECODER.get().decode(slice).toString();
+        } catch (CharacterCodingException e) {
+            // The indexer already rejected malformed input
+            throw new IllegalStateException("impossible: malformed UTF-8 input", e);
+        }
+    }
+
+    @Nullable
+    private volatile ByteBuffer buffer;
+    // Each entry's key, in file order; null once a later entry replaces it
+    private final String[] keys;
+    // Open-addressing hash table of entry numbers, NO_ENTRY when empty
+    private final int[] table;
+    private final int size;
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+    private final int[] javadocStarts;
+    private final int[] javadocEnds;
+    private final AtomicReferenceArray<String> values;
+    private Set<Map.Entry<String, String>> entrySet;
+    private Set<String> keySet;
+
+    private MappedUTF8Properties(ByteBuffer buffer) throws IOException {
+        Indexer indexer = new Indexer(buffer);
+        indexer.index();
+        this.buffer = buffer;
+        this.keys = indexer.keys;
+        this.table = new int[Math.max(2, Integer.highestOneBit(Math.max(1, indexer.count)) * 4)];
+        Arrays.fill(this.table, NO_ENTRY);
+        int distinct = 0;
+        for (int entry = 0; entry < indexer.count; entry++) {
+            int slot = slotOf(this.keys[entry]);
+            int old = this.table[slot];
+            if (old == NO_ENTRY) {
+                distinct++;
+            } else {
+                // Later entries replace earlier ones
+                this.keys[old] = null;
+            }
+            this.table[slot] = entry;
+        }
+        this.size = distinct;
+        this.valueStarts = indexer.valueStarts;
+        this.valueEnds = indexer.valueEnds;
+        this.javadocStarts = indexer.javadocStarts;
+        this.javadocEnds = indexer.javadocEnds;
+        this.values = new AtomicReferenceArray<>(indexer.count);
+    }
+
+    /**
+     * Finds the slot holding the key, or the empty slot it would go in.
+     */
+    private int slotOf(String key) {
+        int mask = this.table.length - 1;
+        int h = key.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (this.table[slot] != NO_ENTRY && !this.keys[this.table[slot]].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int entryOf(@Nullable Object key) {
+        return key instanceof String ? this.table[slotOf((String) key)] : NO_ENTRY;
+    }
+
+    private String decode(int start, int end) {
+        ByteBuffer mapped = this.buffer;
+        checkState(mapped != null, "already closed");
+        return decode(mapped, start, end);
+    }
+
+    private String valueOf(int entry) {
+        String value = this.values.get(entry);
+        if (value == null) {
+            value = decode(this.valueStarts[entry], this.valueEnds[entry]);
+            this.values.lazySet(entry, value);
+        }
+        return value;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             if this has been closed and the value wasn't read before
+     */
+    @Override
+    public String get(Object key) {
+        int entry = entryOf(key);
+        return entry == NO_ENTRY ? null : valueOf(entry);
+    }
+
+    /**
+     * Gets the javadoc comment attached to the given key. It is decoded on
+     * each call.
+     * 
+     * @return the javadoc, or {@code null} if there is none
+     * @throws IllegalStateException
+     *             if this has been closed
+     */
+    @Nullable
+    public String getJavadoc(String key) {
+        int entry = entryOf(key);
+        if (entry == NO_ENTRY || this.javadocStarts[entry] == NO_JAVADOC) {
+            return null;
+        }
+        return decode(this.javadocStarts[entry], this.javadocEnds[entry]);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entryOf(key) != NO_ENTRY;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Drops the mapping. Keys can still be listed afterwards, but values that
+     * haven't been read yet and javadoc can't.
+     */
+    @Override
+    public void close() {
+        this.buffer = null;
+    }
+
+    private <T> Iterator<T> entryIterator(IntFunction<T> element) {
+        return new Iterator<T>() {
+
+            private int next = advance(0);
+
+            private int advance(int from) {
+                int entry = from;
+                while (entry < MappedUTF8Properties.this.values.length()
+                        && MappedUTF8Properties.this.keys[entry] == null) {
+                    entry++;
+                }
+                return entry;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next < MappedUTF8Properties.this.values.length();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int entry = this.next;
+                this.next = advance(entry + 1);
+                return element.apply(entry);
+            }
+
+        };
+    }
+
+    @Override
+    public Set<String> keySet() {
+        Set<String> view = this.keySet;
+        if (view == null) {
+            this.keySet = view = new AbstractSet<String>() {
+
+                @Override
+                public Iterator<String> iterator() {
+                    return entryIterator(entry -> MappedUTF8Properties.this.keys[entry]);
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return containsKey(o);
+                }
+
+                @Override
+                public int size() {
+                    return MappedUTF8Properties.this.size;
+                }
+
+            };
+        }
+        return view;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        Set<Map.Entry<String, String>> entries = this.entrySet;
+        if (entries == null) {
+            this.entrySet = entries = new AbstractSet<Map.Entry<String, String>>() {
+
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return entryIterator(entry -> new SimpleImmutableEntry<>(MappedUTF8Properties.this.keys[entry],
+                            valueOf(entry)));
+                }
+
+                @Override
+                public int size() {
+                    return MappedUTF8Properties.this.size;
+                }
+
+            };
+        }
+        return entries;
+    }
+
+}
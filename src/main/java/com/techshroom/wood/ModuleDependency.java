@@ -26,36 +26,58 @@ package com.techshroom.wood;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Splitter;
 import com.google.common.collect.BoundType;
-import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 
 @AutoValue
 public abstract class ModuleDependency {
 
-    private static final Pattern VERSION_RANGE_PATTERN;
-    static {
-        // Raw regex: (\d\.\d\.\d(?:\-[^+]+?)?
-        // Matches semver specifications
-        String versionPattern = "(\\d\\.\\d\\.\\d(?:\\-[^+]+?)?(?:\\+.+?)?)?";
-        // Start and end match open/close range markers
-        // ^(\(|\[) + versionPattern + ',' + versionPattern + (\)|\])$
-        String regex = "^(\\(|\\[)" + versionPattern + "," + versionPattern + "(\\)|\\])$";
-        VERSION_RANGE_PATTERN = Pattern.compile(regex);
-    }
     private static final SemVer ZERO = SemVer.fromFields(0, 0, 0, null, null);
+    private static final ParseCache<ModuleDependency> INTERNED = ParseCache.create(ModuleDependency::parse);
 
-    public static FluentIterable<ModuleDependency> fromList(String list) {
-        Iterable<String> splits = Splitter.on(';').split(list);
-        return FluentIterable.from(splits).transform(ModuleDependency::fromString);
+    /**
+     * Parses a list of dependencies separated by {@code ';'}. Empty entries
+     * are skipped.
+     */
+    public static ImmutableList<ModuleDependency> fromList(String list) {
+        ImmutableList.Builder<ModuleDependency> dependencies = ImmutableList.builder();
+        int start = 0;
+        int length = list.length();
+        while (start <= length) {
+            int end = list.indexOf(';', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                dependencies.add(fromString(list.substring(start, end)));
+            }
+            start = end + 1;
+        }
+        return dependencies.build();
     }
 
+    /**
+     * Parses a dependency string. Identical strings return the same interned
+     * instance.
+     */
     public static ModuleDependency fromString(String dependency) {
+        return INTERNED.get(dependency);
+    }
+
+    /**
+     * Returns the canonical instance equal to the given dependency, shared
+     * with {@link #fromString(String)}.
+     */
+    public static ModuleDependency intern(ModuleDependency dependency) {
+        return INTERNED.intern(dependency);
+    }
+
+    /**
+     * Parses a dependency string, bypassing the interning cache.
+     */
+    static ModuleDependency parse(String dependency) {
         // Dependency format: '<id>:<version>'
         // List format: '<dep>;<dep>;<dep>'
         // Version range format:
@@ -65,41 +87,59 @@ public abstract class ModuleDependency {
         // Any version with major.minor 1.0: [1.0.0,1.1.0)
         // 1.0.0-1.2.0: [1.0.0,1.2.0]
         // etc. Basically works like Range.
-        String id;
-        Range<SemVer> range;
-        String[] idSplit = dependency.split(":", 2);
-        id = idSplit[0];
-        if (idSplit.length == 2 && !idSplit[1].equals("*")) {
-            String r = idSplit[1];
-            Matcher matcher = VERSION_RANGE_PATTERN.matcher(r);
-
-            checkArgument(matcher.matches(), "'%s' is not a valid range", r);
-
-            BoundType lowBound = matcher.group(1).equals("(") ? BoundType.OPEN : BoundType.CLOSED;
-            BoundType hiBound = matcher.group(4).equals(")") ? BoundType.OPEN : BoundType.CLOSED;
-            String lowVersion = matcher.group(2);
-            String hiVersion = matcher.group(3);
-            checkArgument(lowVersion != null || hiVersion != null,
-                    "A bound must have at least one version. Use \"[0.0.0,)\" or '*' for any.");
-            if (lowVersion == null) {
-                checkArgument(lowBound == BoundType.OPEN, "must use '(' with no lower bound");
-                range = Range.upTo(SemVer.fromString(hiVersion), hiBound);
-            } else if (hiVersion == null) {
-                checkArgument(hiBound == BoundType.OPEN, "must use ')' with no upper bound");
-                range = Range.downTo(SemVer.fromString(lowVersion), lowBound);
-            } else {
-                range = Range.range(SemVer.fromString(lowVersion), lowBound, SemVer.fromString(hiVersion), hiBound);
-            }
+        int colon = dependency.indexOf(':');
+        if (colon < 0) {
+            return fromFields(dependency, Range.downTo(ZERO, BoundType.CLOSED));
+        }
+        String id = dependency.substring(0, colon);
+        int start = colon + 1;
+        int end = dependency.length();
+        if (end - start == 1 && dependency.charAt(start) == '*') {
+            return fromFields(id, Range.downTo(ZERO, BoundType.CLOSED));
+        }
+        return fromFields(id, parseRange(dependency, start, end));
+    }
+
+    private static Range<SemVer> parseRange(String source, int start, int end) {
+        // Shortest valid range is "(,)" (rejected below for lacking versions)
+        int comma = end - start < 3 ? -1 : source.indexOf(',', start + 1);
+        checkArgument(comma >= 0 && comma < end - 1, "'%s' is not a valid range", source.substring(start, end));
+        char open = source.charAt(start);
+        char close = source.charAt(end - 1);
+        checkArgument((open == '(' || open == '[') && (close == ')' || close == ']'), "'%s' is not a valid range",
+                source.substring(start, end));
+
+        BoundType lowBound = open == '(' ? BoundType.OPEN : BoundType.CLOSED;
+        BoundType hiBound = close == ')' ? BoundType.OPEN : BoundType.CLOSED;
+        SemVer lowVersion;
+        SemVer hiVersion;
+        try {
+            lowVersion = comma == start + 1 ? null : SemVer.parse(source, start + 1, comma);
+            hiVersion = comma == end - 2 ? null : SemVer.parse(source, comma + 1, end - 1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("'%s' is not a valid range", source.substring(start, end)),
+                    e);
+        }
+        checkArgument(lowVersion != null || hiVersion != null,
+                "A bound must have at least one version. Use \"[0.0.0,)\" or '*' for any.");
+        if (lowVersion == null) {
+            checkArgument(lowBound == BoundType.OPEN, "must use '(' with no lower bound");
+            return Range.upTo(hiVersion, hiBound);
+        } else if (hiVersion == null) {
+            checkArgument(hiBound == BoundType.OPEN, "must use ')' with no upper bound");
+            return Range.downTo(lowVersion, lowBound);
         } else {
-            range = Range.downTo(ZERO, BoundType.CLOSED);
+            return Range.range(lowVersion, lowBound, hiVersion, hiBound);
         }
-        return fromFields(id, range);
     }
 
     public static ModuleDependency fromFields(String id, Range<SemVer> versionRange) {
         return new AutoValue_ModuleDependency(id, versionRange);
     }
 
+    private int hashCode;
+    private volatile VersionMatcher versionMatcher;
+
     ModuleDependency() {
     }
 
@@ -107,6 +147,31 @@ public abstract class ModuleDependency {
 
     public abstract Range<SemVer> getVersionRange();
 
+    /**
+     * Returns the {@link #getVersionRange() version range} compiled for fast
+     * version checks. It is compiled once per instance.
+     */
+    public final VersionMatcher getVersionMatcher() {
+        VersionMatcher matcher = this.versionMatcher;
+        if (matcher == null) {
+            matcher = VersionMatcher.compile(getVersionRange());
+            this.versionMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    @Override
+    public final int hashCode() {
+        // Range hashing is comparatively expensive, and interned instances
+        // are hashed over and over by the solver
+        int h = this.hashCode;
+        if (h == 0) {
+            h = (1000003 ^ getId().hashCode()) * 1000003 ^ getVersionRange().hashCode();
+            this.hashCode = h;
+        }
+        return h;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder(getId()).append(':');
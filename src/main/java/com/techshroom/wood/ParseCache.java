@@ -0,0 +1,74 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import java.util.function.Function;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Bounded, concurrent cache of parsed values keyed by their source string.
+ * Identical source strings share one canonical instance. Parsed values are
+ * also interned by equality, so values built without parsing can share the
+ * same instances through {@link #intern(Object)}.
+ */
+final class ParseCache<V> {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 8192;
+
+    static <V> ParseCache<V> create(Function<String, V> parser) {
+        return new ParseCache<>(parser, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    // Weak, so values evicted from the cache and unused elsewhere go away
+    private final Interner<V> interner = Interners.newWeakInterner();
+    private final LoadingCache<String, V> cache;
+
+    private ParseCache(Function<String, V> parser, int maximumSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .build(CacheLoader.from(source -> this.interner.intern(parser.apply(source))));
+    }
+
+    V intern(V value) {
+        return this.interner.intern(value);
+    }
+
+    V get(String source) {
+        try {
+            return this.cache.getUnchecked(source);
+        } catch (UncheckedExecutionException e) {
+            // parse errors should look exactly as if the cache wasn't here
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+}
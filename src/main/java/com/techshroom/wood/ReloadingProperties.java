@@ -0,0 +1,283 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Keeps a {@link UTF8Properties} in sync with a file. The file's directory is
+ * watched with a {@link WatchService}, and when the file changes it is parsed
+ * again and only the entries that differ are applied to the live properties.
+ * Listeners are told which keys changed.
+ * <p>
+ * The file is streamed against the live properties, so unchanged entries cost
+ * nothing beyond parsing. A reload waits until the file has stopped changing
+ * for a short time, so a file that is still being written is not picked up
+ * half-way. If the file fails to parse, the error is logged and the live
+ * properties are left as they were.
+ * </p>
+ */
+public final class ReloadingProperties implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReloadingProperties.class);
+    private static final Duration DEFAULT_QUIET_PERIOD = Duration.ofMillis(200);
+
+    /**
+     * Loads the file and starts watching it for changes. Changes are picked
+     * up once the file has not changed for 200 milliseconds.
+     * 
+     * @param file
+     *            - The properties file
+     * @throws IOException
+     *             if the first load fails, or the file can't be watched
+     */
+    public static ReloadingProperties watch(Path file) throws IOException {
+        return watch(file, DEFAULT_QUIET_PERIOD);
+    }
+
+    /**
+     * Loads the file and starts watching it for changes.
+     * 
+     * @param file
+     *            - The properties file
+     * @param quietPeriod
+     *            - How long the file must go without changing before it is
+     *            reloaded
+     * @throws IOException
+     *             if the first load fails, or the file can't be watched
+     */
+    public static ReloadingProperties watch(Path file, Duration quietPeriod) throws IOException {
+        checkArgument(!quietPeriod.isNegative(), "quiet period must not be negative, got %s", quietPeriod);
+        ReloadingProperties reloading = new ReloadingProperties(file.toAbsolutePath());
+        // Registered before the first load, so a write in between is not missed
+        reloading.register();
+        try {
+            reloading.reload();
+        } catch (IOException | RuntimeException e) {
+            reloading.close();
+            throw e;
+        }
+        reloading.startWatching(quietPeriod);
+        return reloading;
+    }
+
+    /**
+     * Loads the file without watching it, {@link #reload()} must be called to
+     * pick up changes.
+     */
+    static ReloadingProperties load(Path file) throws IOException {
+        ReloadingProperties reloading = new ReloadingProperties(file.toAbsolutePath());
+        reloading.reload();
+        return reloading;
+    }
+
+    private static final class Update {
+
+        private final String value;
+        @Nullable
+        private final String javadoc;
+        private final int lineNumber;
+        private final boolean changed;
+
+        Update(String value, @Nullable String javadoc, int lineNumber, boolean changed) {
+            this.value = value;
+            this.javadoc = javadoc;
+            this.lineNumber = lineNumber;
+            this.changed = changed;
+        }
+
+    }
+
+    private final Path file;
+    // Tracked so typed values that fail to parse can point at the file
+    private final UTF8Properties properties = new UTF8Properties().trackLineNumbers();
+    private final List<Consumer<ImmutableSet<String>>> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+
+    private ReloadingProperties(Path file) {
+        this.file = file;
+    }
+
+    private void register() throws IOException {
+        this.watchService = this.file.getFileSystem().newWatchService();
+        try {
+            this.file.getParent().register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            this.watchService.close();
+            throw e;
+        }
+    }
+
+    private void startWatching(Duration quietPeriod) {
+        Thread watchThread = new Thread(() -> watchLoop(quietPeriod.toMillis()),
+                "ReloadingProperties[" + this.file.getFileName() + "]");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void watchLoop(long quietMillis) {
+        try {
+            while (true) {
+                if (!fileChanged(this.watchService.take())) {
+                    continue;
+                }
+                // Writers often truncate first and write after, wait for the
+                // file to settle so a half-written file isn't loaded
+                WatchKey key;
+                while ((key = this.watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    fileChanged(key);
+                }
+                try {
+                    reload();
+                } catch (Exception e) {
+                    LOGGER.error("Error reloading " + this.file + ", keeping the previous values", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed, stop watching
+        }
+    }
+
+    private boolean fileChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (this.file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * @return the live properties, updated in place on every reload
+     */
+    public UTF8Properties getProperties() {
+        return this.properties;
+    }
+
+    /**
+     * Adds a listener that receives the keys that were added, changed or
+     * removed by each reload. It is not called if nothing changed.
+     */
+    public void addListener(Consumer<ImmutableSet<String>> listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<ImmutableSet<String>> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Parses the file again and applies the differences to the live
+     * properties. This is called automatically when the file changes.
+     * 
+     * @return the keys that changed
+     */
+    public synchronized ImmutableSet<String> reload() throws IOException {
+        // Only differences are kept, and applied once the whole file parsed
+        Set<String> seen = new HashSet<>();
+        Map<String, Update> updates = new LinkedHashMap<>();
+        try (InputStream stream = Files.newInputStream(this.file)) {
+            UTF8Properties.parse(stream, (key, value, javadoc, lineNumber) -> {
+                seen.add(key);
+                boolean changed = !value.equals(this.properties.get(key))
+                        || !Objects.equals(javadoc, this.properties.getJavadoc(key));
+                // Lines may move without the entry changing
+                if (changed || this.properties.getLineNumber(key).orElse(-1) != lineNumber) {
+                    updates.put(key, new Update(value, javadoc, lineNumber, changed));
+                } else {
+                    // A later duplicate of the key may undo an earlier one
+                    updates.remove(key);
+                }
+                return true;
+            });
+        }
+        ImmutableSet.Builder<String> changed = ImmutableSet.builder();
+        updates.forEach((key, update) -> {
+            this.properties.putEntry(key, update.value, update.javadoc, update.lineNumber);
+            if (update.changed) {
+                changed.add(key);
+            }
+        });
+        for (String key : this.properties.keySet()) {
+            if (!seen.contains(key)) {
+                this.properties.remove(key);
+                changed.add(key);
+            }
+        }
+        ImmutableSet<String> changedKeys = changed.build();
+        if (!changedKeys.isEmpty()) {
+            for (Consumer<ImmutableSet<String>> listener : this.listeners) {
+                try {
+                    listener.accept(changedKeys);
+                } catch (Exception e) {
+                    LOGGER.error("Error in reload listener for " + this.file, e);
+                }
+            }
+        }
+        return changedKeys;
+    }
+
+    /**
+     * Stops watching the file. The properties keep their last values.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.watchService != null) {
+            this.watchService.close();
+        }
+    }
+
+}
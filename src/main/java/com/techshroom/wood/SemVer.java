@@ -24,48 +24,152 @@
  */
 package com.techshroom.wood;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.Optional;
-import java.util.function.ToIntBiFunction;
 
 import javax.annotation.Nullable;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.collect.ComparisonChain;
 
+/**
+ * A semantic version. Ordering follows the semver specification: major, minor
+ * and patch are compared through a {@linkplain #getPackedKey() packed key}
+ * when both versions have one, then pre-release identifiers field by field.
+ * Build metadata is ignored when
+ * ordering, so {@link #compareTo(SemVer)} is not consistent with
+ * {@link #equals(Object)} for versions differing only in build metadata.
+ */
 @AutoValue
 public abstract class SemVer implements Comparable<SemVer> {
 
+    private static final int FIELD_BITS = 21;
+    private static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+    /**
+     * The largest major, minor or patch value that fits in a packed key.
+     */
+    public static final int MAX_FIELD_VALUE = (int) FIELD_MASK;
+    /**
+     * The {@linkplain #getPackedKey() packed key} of a version with a field
+     * that doesn't fit.
+     */
+    public static final long NO_PACKED_KEY = -1;
+
+    private static final ParseCache<SemVer> INTERNED = ParseCache.create(SemVer::parse);
+
+    /**
+     * Parses a version string. Identical strings return the same interned
+     * instance.
+     */
     public static SemVer fromString(String version) {
+        return INTERNED.get(version);
+    }
+
+    /**
+     * Returns the canonical instance equal to the given version, shared with
+     * {@link #fromString(String)}.
+     */
+    public static SemVer intern(SemVer version) {
+        return INTERNED.intern(version);
+    }
+
+    private static SemVer parse(String version) {
+        return parse(version, 0, version.length());
+    }
+
+    /**
+     * Parses the version in {@code source} between {@code start} (inclusive)
+     * and {@code end} (exclusive) in a single pass.
+     */
+    static SemVer parse(String source, int start, int end) {
+        // Core version runs up to the first '-' or '+'
+        int coreEnd = start;
+        while (coreEnd < end) {
+            char c = source.charAt(coreEnd);
+            if (c == '-' || c == '+') {
+                break;
+            }
+            coreEnd++;
+        }
+        int firstDot = indexOf(source, '.', start, coreEnd);
+        int secondDot = firstDot < 0 ? -1 : indexOf(source, '.', firstDot + 1, coreEnd);
+        if (secondDot < 0) {
+            throw new IllegalArgumentException("Version must have 3 parts.");
+        }
+        int major = parseField(source, start, firstDot, "major");
+        int minor = parseField(source, firstDot + 1, secondDot, "minor");
+        int patch = parseField(source, secondDot + 1, coreEnd, "patch");
+
         String preRelease = null;
         String buildMetadata = null;
-
-        String[] preRelSplit = version.split("-", 2);
-        if (preRelSplit.length == 2) {
-            version = preRelSplit[0];
-            preRelease = preRelSplit[1];
+        int pos = coreEnd;
+        if (pos < end && source.charAt(pos) == '-') {
+            int preReleaseEnd = indexOf(source, '+', pos + 1, end);
+            if (preReleaseEnd < 0) {
+                preReleaseEnd = end;
+            }
+            preRelease = source.substring(pos + 1, preReleaseEnd);
+            pos = preReleaseEnd;
+        }
+        if (pos < end) {
+            // Must be '+' here
+            buildMetadata = source.substring(pos + 1, end);
         }
+        return fromFields(major, minor, patch, preRelease, buildMetadata);
+    }
 
-        String[] buildSplit = version.split("\\+", 2);
-        if (buildSplit.length == 2) {
-            version = buildSplit[0];
-            buildMetadata = buildSplit[1];
+    private static int indexOf(String source, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) == c) {
+                return i;
+            }
         }
+        return -1;
+    }
 
-        ToIntBiFunction<String, String> intParse = (s, field) -> {
-            try {
-                return Integer.parseInt(s);
-            } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("The " + field + " part must be an integer, not " + s);
+    private static int parseField(String source, int start, int end, String field) {
+        if (start == end) {
+            throw new IllegalArgumentException("The " + field + " part must be an integer, not ");
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException(
+                        "The " + field + " part must be an integer, not " + source.substring(start, end));
             }
-        };
-        String[] versionSplit = version.split("\\.", 3);
-        if (versionSplit.length != 3) {
-            throw new IllegalArgumentException("Version must have 3 parts.");
+            if (value > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                throw new IllegalArgumentException(
+                        "The " + field + " part must be an integer, not " + source.substring(start, end));
+            }
+            value = value * 10 + (c - '0');
         }
-        int major = intParse.applyAsInt(versionSplit[0], "major");
-        int minor = intParse.applyAsInt(versionSplit[1], "minor");
-        int patch = intParse.applyAsInt(versionSplit[2], "patch");
-        return fromFields(major, minor, patch, preRelease, buildMetadata);
+        return value;
+    }
+
+    /**
+     * Packs major, minor and patch into a single non-negative key. Keys order
+     * the same way as the fields they were packed from.
+     * 
+     * @return the key, or {@link #NO_PACKED_KEY} if a field is negative or
+     *         larger than {@link #MAX_FIELD_VALUE}
+     */
+    public static long packKey(int major, int minor, int patch) {
+        if ((major | minor | patch) < 0 || major > MAX_FIELD_VALUE || minor > MAX_FIELD_VALUE
+                || patch > MAX_FIELD_VALUE) {
+            return NO_PACKED_KEY;
+        }
+        return ((long) major << (2 * FIELD_BITS)) | ((long) minor << FIELD_BITS) | patch;
+    }
+
+    /**
+     * Rebuilds a version from a key created by {@link #packKey(int, int, int)}.
+     */
+    public static SemVer
+            fromPackedKey(long key, @Nullable String preReleaseInfo, @Nullable String buildMetadata) {
+        checkArgument(key >= 0, "not a packed key: %s", key);
+        return fromFields((int) (key >>> (2 * FIELD_BITS)), (int) ((key >>> FIELD_BITS) & FIELD_MASK),
+                (int) (key & FIELD_MASK), preReleaseInfo, buildMetadata);
     }
 
     public static SemVer
@@ -76,7 +180,90 @@ public abstract class SemVer implements Comparable<SemVer> {
 
     private static SemVer
             fromFieldsRaw(int major, int minor, int patch, Optional<String> preReleaseInfo, Optional<String> buildMetadata) {
-        return new AutoValue_SemVer(major, minor, patch, preReleaseInfo, buildMetadata);
+        return new AutoValue_SemVer(major, minor, patch, preReleaseInfo, buildMetadata,
+                packKey(major, minor, patch));
+    }
+
+    /**
+     * Compares pre-release strings according to the semver specification. A
+     * missing pre-release sorts after any pre-release.
+     */
+    static int comparePreRelease(@Nullable String a, @Nullable String b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return 1;
+        }
+        if (b == null) {
+            return -1;
+        }
+        int aLen = a.length();
+        int bLen = b.length();
+        int aStart = 0;
+        int bStart = 0;
+        while (aStart <= aLen && bStart <= bLen) {
+            int aEnd = a.indexOf('.', aStart);
+            if (aEnd < 0) {
+                aEnd = aLen;
+            }
+            int bEnd = b.indexOf('.', bStart);
+            if (bEnd < 0) {
+                bEnd = bLen;
+            }
+            int cmp = compareIdentifier(a, aStart, aEnd, b, bStart, bEnd);
+            if (cmp != 0) {
+                return cmp;
+            }
+            aStart = aEnd + 1;
+            bStart = bEnd + 1;
+        }
+        // All shared identifiers are equal, more identifiers sorts higher
+        return Boolean.compare(aStart <= aLen, bStart <= bLen);
+    }
+
+    private static int compareIdentifier(String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+        boolean aNumeric = isNumeric(a, aStart, aEnd);
+        boolean bNumeric = isNumeric(b, bStart, bEnd);
+        if (aNumeric != bNumeric) {
+            // Numeric identifiers sort before alphanumeric ones
+            return aNumeric ? -1 : 1;
+        }
+        if (aNumeric) {
+            // Compare by magnitude without parsing, so any length works
+            while (aStart < aEnd - 1 && a.charAt(aStart) == '0') {
+                aStart++;
+            }
+            while (bStart < bEnd - 1 && b.charAt(bStart) == '0') {
+                bStart++;
+            }
+            int lenCmp = Integer.compare(aEnd - aStart, bEnd - bStart);
+            if (lenCmp != 0) {
+                return lenCmp;
+            }
+        }
+        int aLen = aEnd - aStart;
+        int bLen = bEnd - bStart;
+        for (int i = 0, len = Math.min(aLen, bLen); i < len; i++) {
+            int cmp = Character.compare(a.charAt(aStart + i), b.charAt(bStart + i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(aLen, bLen);
+    }
+
+    private static boolean isNumeric(String s, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
     SemVer() {
@@ -114,11 +301,38 @@ public abstract class SemVer implements Comparable<SemVer> {
                 Optional.ofNullable(buildMetadata));
     }
 
+    /**
+     * Returns major, minor and patch packed into one key, as by
+     * {@link #packKey(int, int, int)}. The key is computed once, when the
+     * version is created.
+     * 
+     * @return the key, or {@link #NO_PACKED_KEY} if a field doesn't fit
+     */
+    public abstract long getPackedKey();
+
     @Override
     public int compareTo(SemVer o) {
-        return ComparisonChain.start().compare(getMajor(), o.getMajor()).compare(getMinor(), o.getMinor())
-                .compare(getPatch(), o.getPatch())
-                .compareFalseFirst(getPreReleaseInfo().isPresent(), o.getPreReleaseInfo().isPresent()).result();
+        if (this == o) {
+            return 0;
+        }
+        long key = getPackedKey();
+        long otherKey = o.getPackedKey();
+        int cmp;
+        if (key != NO_PACKED_KEY && otherKey != NO_PACKED_KEY) {
+            cmp = Long.compare(key, otherKey);
+        } else {
+            cmp = Integer.compare(getMajor(), o.getMajor());
+            if (cmp == 0) {
+                cmp = Integer.compare(getMinor(), o.getMinor());
+            }
+            if (cmp == 0) {
+                cmp = Integer.compare(getPatch(), o.getPatch());
+            }
+        }
+        if (cmp != 0) {
+            return cmp;
+        }
+        return comparePreRelease(getPreReleaseInfo().orElse(null), o.getPreReleaseInfo().orElse(null));
     }
 
     @Override
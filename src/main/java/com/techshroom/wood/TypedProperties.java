@@ -0,0 +1,246 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Typed accessors over a {@link UTF8Properties}. Each value is parsed the
+ * first time it is read as a given type, and the result is cached until the
+ * underlying entry changes.
+ * <p>
+ * A change is noticed by the raw value no longer being the same
+ * {@code String} instance that was parsed, so updates made by
+ * {@link ReloadingProperties} (which leaves unchanged entries alone) only
+ * drop the cache for the entries that changed.
+ * </p>
+ */
+public final class TypedProperties {
+
+    public static final Function<String, Integer> INT = raw -> Integer.valueOf(raw.trim());
+
+    public static final Function<String, Long> LONG = raw -> Long.valueOf(raw.trim());
+
+    /**
+     * Accepts {@code true} or {@code false}, ignoring case. Anything else is
+     * an error.
+     */
+    public static final Function<String, Boolean> BOOLEAN = raw -> {
+        String trimmed = raw.trim();
+        if (Ascii.equalsIgnoreCase(trimmed, "true")) {
+            return Boolean.TRUE;
+        } else if (Ascii.equalsIgnoreCase(trimmed, "false")) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("expected true or false");
+    };
+
+    /**
+     * Accepts ISO-8601 durations ({@code PT1M30S}) or a whole number with a
+     * unit of {@code ms}, {@code s}, {@code m}, {@code h} or {@code d}
+     * ({@code 90s}).
+     */
+    public static final Function<String, Duration> DURATION = TypedProperties::parseDuration;
+
+    /**
+     * Comma-separated list, entries are trimmed and empty entries skipped.
+     */
+    public static final Function<String, ImmutableList<String>> LIST =
+            raw -> ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(raw));
+
+    public static final Function<String, SemVer> SEMVER = raw -> SemVer.fromString(raw.trim());
+
+    private static Duration parseDuration(String raw) {
+        String trimmed = raw.trim();
+        if (trimmed.startsWith("P") || trimmed.startsWith("p")) {
+            try {
+                return Duration.parse(trimmed);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+        int unitStart = 0;
+        while (unitStart < trimmed.length() && Character.isDigit(trimmed.charAt(unitStart))) {
+            unitStart++;
+        }
+        if (unitStart == 0) {
+            throw new IllegalArgumentException("expected an ISO-8601 duration or a number with a unit");
+        }
+        long amount = Long.parseLong(trimmed.substring(0, unitStart));
+        switch (trimmed.substring(unitStart)) {
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                throw new IllegalArgumentException("unknown duration unit '" + trimmed.substring(unitStart) + "'");
+        }
+    }
+
+    private static final class Cached {
+
+        private final String raw;
+        private final Object value;
+
+        Cached(String raw, Object value) {
+            this.raw = raw;
+            this.value = value;
+        }
+
+    }
+
+    /**
+     * Wraps existing properties. Parse errors only name the line of the bad
+     * value if the properties were loaded with
+     * {@linkplain UTF8Properties#trackLineNumbers() line numbers tracked}; use
+     * {@link #load(InputStream)} or {@link #load(Reader)} to get them.
+     */
+    public static TypedProperties of(UTF8Properties properties) {
+        return new TypedProperties(properties);
+    }
+
+    /**
+     * Loads properties from the given stream using UTF-8 character decoding,
+     * tracking line numbers for parse errors.
+     * 
+     * @param stream
+     *            - The input stream, will not be closed
+     * @throws IOException
+     */
+    public static TypedProperties load(InputStream stream) throws IOException {
+        return of(new UTF8Properties().trackLineNumbers().load(stream));
+    }
+
+    /**
+     * Loads properties from the given reader, tracking line numbers for parse
+     * errors.
+     * 
+     * @param reader
+     *            - The reader, will not be closed
+     * @throws IOException
+     */
+    public static TypedProperties load(Reader reader) throws IOException {
+        return of(new UTF8Properties().trackLineNumbers().load(reader));
+    }
+
+    private final UTF8Properties properties;
+    // By parser, then key, so one key read as two types keeps both
+    private final Map<Function<String, ?>, Map<String, Cached>> cache = new ConcurrentHashMap<>();
+
+    private TypedProperties(UTF8Properties properties) {
+        this.properties = properties;
+    }
+
+    public UTF8Properties getProperties() {
+        return this.properties;
+    }
+
+    /**
+     * Gets the value for the key, parsed by the given parser. Parsers are
+     * cached by identity, so use the same instance (such as the constants in
+     * this class) each time.
+     * 
+     * @return the parsed value, or {@code null} if there is no such key
+     * @throws IllegalArgumentException
+     *             if the value can't be parsed, with the line it came from
+     */
+    @Nullable
+    public <T> T get(String key, Function<String, T> parser) {
+        Map<String, Cached> parsed = this.cache.computeIfAbsent(parser, p -> new ConcurrentHashMap<>());
+        String raw = this.properties.get(key);
+        if (raw == null) {
+            parsed.remove(key);
+            return null;
+        }
+        Cached cached = parsed.get(key);
+        if (cached != null && cached.raw == raw) {
+            @SuppressWarnings("unchecked")
+            T value = (T) cached.value;
+            return value;
+        }
+        T value;
+        try {
+            value = parser.apply(raw);
+        } catch (RuntimeException e) {
+            OptionalInt line = this.properties.getLineNumber(key);
+            String where = line.isPresent() ? "On line " + line.getAsInt() + ": " : "";
+            throw new IllegalArgumentException(where + "invalid value '" + raw + "' for " + key + ": "
+                    + e.getMessage(), e);
+        }
+        parsed.put(key, new Cached(raw, value));
+        return value;
+    }
+
+    public <T> T get(String key, Function<String, T> parser, T defaultValue) {
+        T value = get(key, parser);
+        return value == null ? defaultValue : value;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return get(key, INT, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return get(key, LONG, defaultValue);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return get(key, BOOLEAN, defaultValue);
+    }
+
+    public Duration getDuration(String key, Duration defaultValue) {
+        return get(key, DURATION, defaultValue);
+    }
+
+    public ImmutableList<String> getList(String key) {
+        return get(key, LIST, ImmutableList.of());
+    }
+
+    @Nullable
+    public SemVer getSemVer(String key) {
+        return get(key, SEMVER);
+    }
+
+}
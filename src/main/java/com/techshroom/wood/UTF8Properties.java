@@ -29,20 +29,77 @@ import static com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.Serializable;
 import java.util.Map;
+import java.util.OptionalInt;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.Nullable;
+
 /**
  * Similar to {@link Properties}, but encoded in UTF-8 by default. It also
  * supports attaching javadoc-like comments to each entry.
+ * <p>
+ * Javadoc comments and line numbers describe entries as they were loaded.
+ * Once an entry is replaced or removed through the {@link Map} methods, they
+ * are no longer reported for it.
+ * </p>
+ * <p>
+ * Large files on disk can be opened with {@link MappedUTF8Properties} instead,
+ * which decodes values only when they are read.
+ * </p>
  */
 public final class UTF8Properties extends ConcurrentHashMap<String, String> {
 
     private static final long serialVersionUID = -5306083496118278080L;
-    private final Map<String, String> javadoc = new ConcurrentHashMap<>();
+    private static final int NO_LINE = -1;
+
+    private static final class Loaded implements Serializable {
+
+        private static final long serialVersionUID = 2408542466232105432L;
+
+        private final String value;
+        @Nullable
+        private final String javadoc;
+        private final int lineNumber;
+
+        Loaded(String value, @Nullable String javadoc, int lineNumber) {
+            this.value = value;
+            this.javadoc = javadoc;
+            this.lineNumber = lineNumber;
+        }
+
+    }
+
+    // Only entries with a javadoc, or any entry when tracking line numbers
+    private final Map<String, Loaded> loaded = new ConcurrentHashMap<>();
+    private volatile boolean trackLineNumbers;
+
+    /**
+     * Receives each entry as it is parsed.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+
+        /**
+         * Called for each entry, in file order.
+         * 
+         * @param key
+         *            - The key
+         * @param value
+         *            - The value
+         * @param javadoc
+         *            - The javadoc comment directly before the entry, if any
+         * @param lineNumber
+         *            - The line the entry starts on, counted the same way as
+         *            in parse errors
+         * @return {@code true} to keep parsing, {@code false} to stop
+         */
+        boolean visit(String key, String value, @Nullable String javadoc, int lineNumber);
+
+    }
 
     private static final class PropertiesReader {
 
@@ -51,19 +108,19 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
             POTENTIAL_CLOSE_JAVADOC;
         }
 
-        private final UTF8Properties readInto;
+        private final EntryVisitor visitor;
         private final StringBuilder strBuilder = new StringBuilder();
         private State state = State.DEFAULT;
         private String currentJavadoc;
         private String currentKey;
+        private int currentKeyLine;
 
-        private PropertiesReader(UTF8Properties readInto) {
-            this.readInto = readInto;
+        private PropertiesReader(EntryVisitor visitor) {
+            this.visitor = visitor;
         }
 
-        private void readProperties(Reader reader) throws IOException {
+        private void readProperties(CPLineReader cpIn) throws IOException {
             this.state = State.DEFAULT;
-            CPLineReader cpIn = new CPLineReader(reader);
             int cp;
             while ((cp = cpIn.nextCodePoint()) != -1) {
                 switch (this.state) {
@@ -75,8 +132,9 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
                                     String.valueOf(Character.toChars(cp)) + " is an invalid key starting character"));
                         } else {
                             this.state = State.READING_KEY;
+                            this.currentKeyLine = cpIn.getLineNumber();
                             this.strBuilder.setLength(0);
-                            this.strBuilder.append(Character.toChars(cp));
+                            this.strBuilder.appendCodePoint(cp);
                         }
                         break;
                     case READING_KEY:
@@ -88,14 +146,19 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
                             throw new IllegalStateException(cpIn.formatError(
                                     String.valueOf(Character.toChars(cp)) + " is an invalid key character"));
                         } else {
-                            this.strBuilder.append(Character.toChars(cp));
+                            this.strBuilder.appendCodePoint(cp);
                         }
                         break;
                     case READING_VALUE:
-                        if (cp == '\n') {
-                            insertValue();
-                        } else {
-                            this.strBuilder.append(Character.toChars(cp));
+                        // Copy the rest of the line in bulk
+                        boolean lineEnded = cp == '\n';
+                        if (!lineEnded) {
+                            this.strBuilder.appendCodePoint(cp);
+                            lineEnded = cpIn.appendLine(this.strBuilder);
+                        }
+                        if (lineEnded && !insertValue()) {
+                            // The visitor wants to stop here
+                            return;
                         }
                         break;
                     case AWAITING_COMMENT:
@@ -104,8 +167,7 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
                         } else if (cp == '/') {
                             // A double-slash single-line comment
                             // Read until \n or EOF
-                            while ((cp = cpIn.nextCodePoint()) != -1 && cp != '\n') {
-                            }
+                            cpIn.skipLine();
                             this.state = State.DEFAULT;
                         } else {
                             // Invalid, we don't support / as a key.
@@ -140,7 +202,7 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
                         if (cp == '*') {
                             this.state = State.POTENTIAL_CLOSE_JAVADOC;
                         } else {
-                            this.strBuilder.append(Character.toChars(cp));
+                            this.strBuilder.appendCodePoint(cp);
                         }
                         break;
                     case POTENTIAL_CLOSE_JAVADOC:
@@ -150,7 +212,7 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
                             this.state = State.DEFAULT;
                         } else {
                             // Javadoc didn't close, just a regular *
-                            this.strBuilder.append('*').append(Character.toChars(cp));
+                            this.strBuilder.append('*').appendCodePoint(cp);
                             this.state = State.READING_JAVADOC;
                         }
                         break;
@@ -164,13 +226,13 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
             checkState(!inInvalidState(), cpIn.errorFormatString(), "invalid properties file");
         }
 
-        private void insertValue() {
+        private boolean insertValue() {
             checkNotNull(this.currentKey, "impossible: null key");
-            if (this.currentJavadoc != null) {
-                this.readInto.javadoc.put(this.currentKey, this.currentJavadoc);
-            }
-            this.readInto.put(this.currentKey, this.strBuilder.toString());
             this.state = State.DEFAULT;
+            String javadoc = this.currentJavadoc;
+            // A javadoc comment belongs only to the entry right after it
+            this.currentJavadoc = null;
+            return this.visitor.visit(this.currentKey, this.strBuilder.toString(), javadoc, this.currentKeyLine);
         }
 
         private boolean inInvalidState() {
@@ -179,7 +241,103 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
 
     }
 
-    private final PropertiesReader reader = new PropertiesReader(this);
+    /**
+     * Parses properties from the given stream using UTF-8 character decoding,
+     * handing each entry to the visitor instead of storing it.
+     * 
+     * @param stream
+     *            - The input stream, will not be closed
+     * @param visitor
+     *            - The visitor, which may stop parsing early
+     * @throws IOException
+     */
+    public static void parse(InputStream stream, EntryVisitor visitor) throws IOException {
+        new PropertiesReader(visitor).readProperties(new CPLineReader(stream));
+    }
+
+    /**
+     * Parses properties from the given reader, handing each entry to the
+     * visitor instead of storing it.
+     * 
+     * @param reader
+     *            - The reader, will not be closed
+     * @param visitor
+     *            - The visitor, which may stop parsing early
+     * @throws IOException
+     */
+    public static void parse(Reader reader, EntryVisitor visitor) throws IOException {
+        new PropertiesReader(visitor).readProperties(new CPLineReader(reader));
+    }
+
+    /**
+     * Makes later loads into this instance record the line each entry came
+     * from, for {@link #getLineNumber(String)}. Off by default, since it keeps
+     * a record for every entry rather than only the documented ones.
+     * 
+     * @return this
+     */
+    public UTF8Properties trackLineNumbers() {
+        this.trackLineNumbers = true;
+        return this;
+    }
+
+    boolean putEntry(String key, String value, @Nullable String javadoc, int lineNumber) {
+        String current = get(key);
+        // Keep an equal instance, TypedProperties uses it to tell nothing changed
+        String stored = value.equals(current) ? current : value;
+        if (javadoc != null || this.trackLineNumbers) {
+            this.loaded.put(key, new Loaded(stored, javadoc, this.trackLineNumbers ? lineNumber : NO_LINE));
+        } else {
+            this.loaded.remove(key);
+        }
+        if (stored != current) {
+            put(key, stored);
+        }
+        return true;
+    }
+
+    @Nullable
+    private Loaded getLoaded(String key) {
+        Loaded loaded = this.loaded.get(key);
+        // Replaced or removed since it was loaded
+        return loaded != null && loaded.value == get(key) ? loaded : null;
+    }
+
+    /**
+     * Gets the javadoc comment attached to the given key.
+     * 
+     * @return the javadoc, or {@code null} if there is none
+     */
+    @Nullable
+    public String getJavadoc(String key) {
+        Loaded loaded = getLoaded(key);
+        return loaded == null ? null : loaded.javadoc;
+    }
+
+    /**
+     * Gets the line the given key was loaded from, counted the same way as in
+     * parse errors.
+     * 
+     * @return the line number, or empty if the key wasn't loaded from a file
+     *         or line numbers are not {@linkplain #trackLineNumbers() tracked}
+     */
+    public OptionalInt getLineNumber(String key) {
+        Loaded loaded = getLoaded(key);
+        return loaded == null || loaded.lineNumber == NO_LINE ? OptionalInt.empty()
+                : OptionalInt.of(loaded.lineNumber);
+    }
+
+    @Override
+    public String remove(Object key) {
+        this.loaded.remove(key);
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        this.loaded.clear();
+        super.clear();
+    }
 
     /**
      * Loads properties from the given stream using UTF-8 character decoding.
@@ -189,8 +347,7 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
      * @throws IOException
      */
     public UTF8Properties load(InputStream stream) throws IOException {
-        load(new InputStreamReader(stream));
-        return this;
+        return load(new CPLineReader(stream));
     }
 
     /**
@@ -201,10 +358,13 @@ public final class UTF8Properties extends ConcurrentHashMap<String, String> {
      * @throws IOException
      */
     public UTF8Properties load(Reader reader) throws IOException {
-        // sync over this.reader since it uses non-thread-safe state
-        synchronized (this.reader) {
-            this.reader.readProperties(reader);
-        }
+        return load(new CPLineReader(reader));
+    }
+
+    private UTF8Properties load(CPLineReader cpIn) throws IOException {
+        // Parser state is per-load and the maps are concurrent, so loads into
+        // the same instance can run at the same time
+        new PropertiesReader(this::putEntry).readProperties(cpIn);
         return this;
     }
 
@@ -0,0 +1,189 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+
+/**
+ * A {@link Range} of {@link SemVer SemVers} compiled down to primitive
+ * comparisons against {@linkplain SemVer#getPackedKey() packed keys}. Matches
+ * exactly the versions that {@link Range#contains(Comparable)} would. Versions
+ * without a packed key are checked against the range itself.
+ */
+public abstract class VersionMatcher {
+
+    private static final VersionMatcher ALL = new VersionMatcher() {
+
+        @Override
+        public boolean matches(SemVer version) {
+            return true;
+        }
+
+    };
+
+    /**
+     * Matches every version from {@code 0.0.0} up, which is every version
+     * except pre-releases of {@code 0.0.0}.
+     */
+    private static final VersionMatcher ANY_RELEASE = new VersionMatcher() {
+
+        private final Range<SemVer> range = Range.atLeast(SemVer.fromFields(0, 0, 0, null, null));
+
+        @Override
+        public boolean matches(SemVer version) {
+            long key = version.getPackedKey();
+            if (key == SemVer.NO_PACKED_KEY) {
+                return this.range.contains(version);
+            }
+            return key != 0 || !version.getPreReleaseInfo().isPresent();
+        }
+
+    };
+
+    private static final class Unpacked extends VersionMatcher {
+
+        private final Range<SemVer> range;
+
+        Unpacked(Range<SemVer> range) {
+            this.range = range;
+        }
+
+        @Override
+        public boolean matches(SemVer version) {
+            return this.range.contains(version);
+        }
+
+    }
+
+    private static final class Exact extends VersionMatcher {
+
+        private final long key;
+        @Nullable
+        private final String preRelease;
+
+        Exact(SemVer version) {
+            this.key = version.getPackedKey();
+            this.preRelease = version.getPreReleaseInfo().orElse(null);
+        }
+
+        @Override
+        public boolean matches(SemVer version) {
+            // A version without a key has a field too large to equal this one
+            return version.getPackedKey() == this.key
+                    && SemVer.comparePreRelease(version.getPreReleaseInfo().orElse(null), this.preRelease) == 0;
+        }
+
+    }
+
+    private static final class Bounded extends VersionMatcher {
+
+        private final Range<SemVer> range;
+        private final boolean hasLower;
+        private final long lowerKey;
+        @Nullable
+        private final String lowerPreRelease;
+        // 0 if the bound is closed, 1 if it is open
+        private final int lowerExclusive;
+        private final boolean hasUpper;
+        private final long upperKey;
+        @Nullable
+        private final String upperPreRelease;
+        private final int upperExclusive;
+
+        Bounded(Range<SemVer> range) {
+            this.range = range;
+            this.hasLower = range.hasLowerBound();
+            this.lowerKey = this.hasLower ? range.lowerEndpoint().getPackedKey() : 0;
+            this.lowerPreRelease = this.hasLower ? range.lowerEndpoint().getPreReleaseInfo().orElse(null) : null;
+            this.lowerExclusive = this.hasLower && range.lowerBoundType() == BoundType.OPEN ? 1 : 0;
+            this.hasUpper = range.hasUpperBound();
+            this.upperKey = this.hasUpper ? range.upperEndpoint().getPackedKey() : 0;
+            this.upperPreRelease = this.hasUpper ? range.upperEndpoint().getPreReleaseInfo().orElse(null) : null;
+            this.upperExclusive = this.hasUpper && range.upperBoundType() == BoundType.OPEN ? 1 : 0;
+        }
+
+        @Override
+        public boolean matches(SemVer version) {
+            long key = version.getPackedKey();
+            if (key == SemVer.NO_PACKED_KEY) {
+                return this.range.contains(version);
+            }
+            String preRelease = version.getPreReleaseInfo().orElse(null);
+            if (this.hasLower && compare(key, preRelease, this.lowerKey, this.lowerPreRelease) < this.lowerExclusive) {
+                return false;
+            }
+            return !this.hasUpper
+                    || compare(key, preRelease, this.upperKey, this.upperPreRelease) < 1 - this.upperExclusive;
+        }
+
+        private static int compare(long key, @Nullable String preRelease, long boundKey,
+                @Nullable String boundPreRelease) {
+            if (key != boundKey) {
+                return key < boundKey ? -1 : 1;
+            }
+            if (preRelease == null && boundPreRelease == null) {
+                return 0;
+            }
+            return Integer.signum(SemVer.comparePreRelease(preRelease, boundPreRelease));
+        }
+
+    }
+
+    /**
+     * Compiles the given range into a matcher.
+     */
+    public static VersionMatcher compile(Range<SemVer> range) {
+        if (!range.hasLowerBound() && !range.hasUpperBound()) {
+            return ALL;
+        }
+        if ((range.hasLowerBound() && range.lowerEndpoint().getPackedKey() == SemVer.NO_PACKED_KEY)
+                || (range.hasUpperBound() && range.upperEndpoint().getPackedKey() == SemVer.NO_PACKED_KEY)) {
+            return new Unpacked(range);
+        }
+        if (range.hasLowerBound() && range.lowerBoundType() == BoundType.CLOSED) {
+            SemVer lower = range.lowerEndpoint();
+            if (!range.hasUpperBound() && lower.getPackedKey() == 0 && !lower.getPreReleaseInfo().isPresent()) {
+                return ANY_RELEASE;
+            }
+            if (range.hasUpperBound() && range.upperBoundType() == BoundType.CLOSED
+                    && lower.compareTo(range.upperEndpoint()) == 0) {
+                return new Exact(lower);
+            }
+        }
+        return new Bounded(range);
+    }
+
+    VersionMatcher() {
+    }
+
+    /**
+     * @return {@code true} if the version is accepted by this matcher
+     */
+    public abstract boolean matches(SemVer version);
+
+}
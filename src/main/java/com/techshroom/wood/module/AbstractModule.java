@@ -31,9 +31,9 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.google.common.collect.ImmutableSet;
 import com.techshroom.wood.ModuleDependency;
 import com.techshroom.wood.SemVer;
 
@@ -55,61 +55,90 @@ public abstract class AbstractModule implements Module {
 
         String[] required() default {};
 
+        Activation activation() default Activation.EAGER;
+
     }
 
-    private final ModuleMetadata meta;
-    {
-        try {
-            Meta meta = getClass().getDeclaredAnnotation(Meta.class);
+    /**
+     * Metadata is parsed once per module class and shared by all instances.
+     */
+    private static final ClassValue<ModuleMetadata> META_CACHE = new ClassValue<ModuleMetadata>() {
+
+        @Override
+        protected ModuleMetadata computeValue(Class<?> type) {
+            try {
+                return new AnnotBasedMeta(type.getDeclaredAnnotation(Meta.class));
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to load @Meta", e);
+            }
+        }
+
+    };
+
+    private static final class AnnotBasedMeta implements ModuleMetadata {
+
+        private static ImmutableSet<ModuleDependency> parseDependencies(String[] dependencies) {
+            return ImmutableSet.copyOf(Stream.of(dependencies).map(ModuleDependency::fromString).iterator());
+        }
+
+        private final String id;
+        private final String name;
+        private final SemVer version;
+        private final ImmutableSet<ModuleDependency> loadAfter;
+        private final ImmutableSet<ModuleDependency> loadBefore;
+        private final ImmutableSet<ModuleDependency> required;
+        private final Activation activation;
+
+        AnnotBasedMeta(Meta meta) {
             checkState(meta != null);
-            String id = meta.id();
-            String name = meta.name();
-            SemVer version = SemVer.fromString(meta.version());
-            Set<ModuleDependency> required =
-                    Stream.of(meta.required()).map(ModuleDependency::fromString).collect(Collectors.toSet());
-            Set<ModuleDependency> loadAfter =
-                    Stream.of(meta.loadAfter()).map(ModuleDependency::fromString).collect(Collectors.toSet());
-            Set<ModuleDependency> loadBefore =
-                    Stream.of(meta.loadBefore()).map(ModuleDependency::fromString).collect(Collectors.toSet());
-            class AnnotBasedMeta implements ModuleMetadata {
-
-                @Override
-                public String getId() {
-                    return id;
-                }
-
-                @Override
-                public String getName() {
-                    return name;
-                }
-
-                @Override
-                public SemVer getVersion() {
-                    return version;
-                }
-
-                @Override
-                public Set<ModuleDependency> getLoadAfterModules() {
-                    return loadAfter;
-                }
-
-                @Override
-                public Set<ModuleDependency> getLoadBeforeModules() {
-                    return loadBefore;
-                }
-
-                @Override
-                public Set<ModuleDependency> getRequiredModules() {
-                    return required;
-                }
+            this.id = meta.id();
+            this.name = meta.name();
+            this.version = SemVer.fromString(meta.version());
+            this.required = parseDependencies(meta.required());
+            this.loadAfter = parseDependencies(meta.loadAfter());
+            this.loadBefore = parseDependencies(meta.loadBefore());
+            this.activation = meta.activation();
+        }
 
-            }
-            this.meta = new AnnotBasedMeta();
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to load @Meta", e);
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
         }
+
+        @Override
+        public SemVer getVersion() {
+            return this.version;
+        }
+
+        @Override
+        public Set<ModuleDependency> getLoadAfterModules() {
+            return this.loadAfter;
+        }
+
+        @Override
+        public Set<ModuleDependency> getLoadBeforeModules() {
+            return this.loadBefore;
+        }
+
+        @Override
+        public Set<ModuleDependency> getRequiredModules() {
+            return this.required;
+        }
+
+        @Override
+        public Activation getActivation() {
+            return this.activation;
+        }
+
     }
 
+    private final ModuleMetadata meta = META_CACHE.get(getClass());
+
     @Override
     public ModuleMetadata getMetadata() {
         return this.meta;
@@ -0,0 +1,293 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+import com.techshroom.wood.ModuleDependency;
+import com.techshroom.wood.SemVer;
+
+/**
+ * Compact binary form of module descriptors. The text descriptors read by
+ * {@link Modules#getModuleMetadata(java.io.InputStream)} remain the source of
+ * truth, this is a compiled form of them for fast loading.
+ * <p>
+ * Any number of descriptors are stored together, sharing one string table.
+ * Versions are stored as {@linkplain SemVer#getPackedKey() packed keys},
+ * followed by the fields themselves for versions without one, and
+ * dependency ranges are stored already parsed, so reading does no text
+ * parsing besides decoding the string table.
+ * </p>
+ */
+public final class BinaryModuleDescriptors {
+
+    private static final int MAGIC = 0x57504D44; // "WPMD"
+    private static final byte FORMAT_VERSION = 1;
+    private static final int NO_STRING = -1;
+
+    private static final int HAS_LOWER = 1;
+    private static final int LOWER_CLOSED = 1 << 1;
+    private static final int HAS_UPPER = 1 << 2;
+    private static final int UPPER_CLOSED = 1 << 3;
+
+    /**
+     * Writes the descriptors to a new buffer.
+     */
+    public static ByteBuffer write(Collection<? extends ModuleMetadata> modules) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(modules, bytes);
+        } catch (IOException e) {
+            // Not possible with a byte array
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Writes the descriptors to the given stream.
+     * 
+     * @param stream
+     *            - The output stream, will not be closed
+     */
+    public static void write(Collection<? extends ModuleMetadata> modules, OutputStream stream) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (ModuleMetadata module : modules) {
+            collectStrings(module, strings);
+        }
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+        out.writeInt(modules.size());
+        for (ModuleMetadata module : modules) {
+            out.writeInt(strings.get(module.getId()));
+            out.writeInt(strings.get(module.getName()));
+            writeVersion(module.getVersion(), strings, out);
+            writeDependencies(module.getLoadAfterModules(), strings, out);
+            writeDependencies(module.getLoadBeforeModules(), strings, out);
+            writeDependencies(module.getRequiredModules(), strings, out);
+        }
+        out.flush();
+    }
+
+    private static void collectStrings(ModuleMetadata module, Map<String, Integer> strings) {
+        addString(module.getId(), strings);
+        addString(module.getName(), strings);
+        collectStrings(module.getVersion(), strings);
+        for (Set<ModuleDependency> dependencies : ImmutableList.of(module.getLoadAfterModules(),
+                module.getLoadBeforeModules(), module.getRequiredModules())) {
+            for (ModuleDependency dependency : dependencies) {
+                addString(dependency.getId(), strings);
+                Range<SemVer> range = dependency.getVersionRange();
+                if (range.hasLowerBound()) {
+                    collectStrings(range.lowerEndpoint(), strings);
+                }
+                if (range.hasUpperBound()) {
+                    collectStrings(range.upperEndpoint(), strings);
+                }
+            }
+        }
+    }
+
+    private static void collectStrings(SemVer version, Map<String, Integer> strings) {
+        version.getPreReleaseInfo().ifPresent(s -> addString(s, strings));
+        version.getBuildMetadata().ifPresent(s -> addString(s, strings));
+    }
+
+    private static void addString(String string, Map<String, Integer> strings) {
+        strings.putIfAbsent(string, strings.size());
+    }
+
+    private static void writeVersion(SemVer version, Map<String, Integer> strings, DataOutputStream out)
+            throws IOException {
+        out.writeLong(version.getPackedKey());
+        if (version.getPackedKey() == SemVer.NO_PACKED_KEY) {
+            out.writeInt(version.getMajor());
+            out.writeInt(version.getMinor());
+            out.writeInt(version.getPatch());
+        }
+        out.writeInt(version.getPreReleaseInfo().map(strings::get).orElse(NO_STRING));
+        out.writeInt(version.getBuildMetadata().map(strings::get).orElse(NO_STRING));
+    }
+
+    private static void writeDependencies(Set<ModuleDependency> dependencies, Map<String, Integer> strings,
+            DataOutputStream out) throws IOException {
+        out.writeInt(dependencies.size());
+        for (ModuleDependency dependency : dependencies) {
+            out.writeInt(strings.get(dependency.getId()));
+            Range<SemVer> range = dependency.getVersionRange();
+            int flags = 0;
+            if (range.hasLowerBound()) {
+                flags |= HAS_LOWER | (range.lowerBoundType() == BoundType.CLOSED ? LOWER_CLOSED : 0);
+            }
+            if (range.hasUpperBound()) {
+                flags |= HAS_UPPER | (range.upperBoundType() == BoundType.CLOSED ? UPPER_CLOSED : 0);
+            }
+            out.writeByte(flags);
+            if (range.hasLowerBound()) {
+                writeVersion(range.lowerEndpoint(), strings, out);
+            }
+            if (range.hasUpperBound()) {
+                writeVersion(range.upperEndpoint(), strings, out);
+            }
+        }
+    }
+
+    /**
+     * Reads descriptors from the buffer, starting at its position. Strings
+     * are decoded straight out of the buffer. Versions and dependencies are
+     * {@linkplain SemVer#intern(SemVer) interned}, sharing instances with
+     * parsed descriptors. The buffer's position is left after the
+     * descriptors.
+     * 
+     * @throws IllegalArgumentException
+     *             if the buffer doesn't hold descriptors in this format, or
+     *             they are truncated or corrupt
+     */
+    public static ImmutableList<ModuleMetadata> read(ByteBuffer buffer) {
+        try {
+            return readDescriptors(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated descriptor data", e);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("corrupt descriptor data", e);
+        }
+    }
+
+    private static ImmutableList<ModuleMetadata> readDescriptors(ByteBuffer buffer) {
+        checkArgument(buffer.getInt() == MAGIC, "not a binary module descriptor");
+        byte formatVersion = buffer.get();
+        checkArgument(formatVersion == FORMAT_VERSION, "unsupported descriptor format version %s", formatVersion);
+        String[] strings = readStrings(buffer);
+        int moduleCount = buffer.getInt();
+        ImmutableList.Builder<ModuleMetadata> modules = ImmutableList.builder();
+        for (int i = 0; i < moduleCount; i++) {
+            String id = strings[buffer.getInt()];
+            String name = strings[buffer.getInt()];
+            SemVer version = readVersion(buffer, strings);
+            ImmutableSet<ModuleDependency> loadAfter = readDependencies(buffer, strings);
+            ImmutableSet<ModuleDependency> loadBefore = readDependencies(buffer, strings);
+            ImmutableSet<ModuleDependency> required = readDependencies(buffer, strings);
+            modules.add(Modules.ModsModMeta.of(id, name, loadAfter, loadBefore, required, version));
+        }
+        return modules.build();
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        String[] strings = new String[buffer.getInt()];
+        ByteBuffer slice = buffer.duplicate();
+        for (int i = 0; i < strings.length; i++) {
+            int length = buffer.getInt();
+            int start = buffer.position();
+            slice.limit(start + length).position(start);
+            try {
+                strings[i] = decoder.decode(slice).toString();
+            } catch (CharacterCodingException e) {
+                throw new IllegalArgumentException("malformed string in descriptor table", e);
+            }
+            buffer.position(start + length);
+        }
+        return strings;
+    }
+
+    @Nullable
+    private static String readOptionalString(ByteBuffer buffer, String[] strings) {
+        int index = buffer.getInt();
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    private static SemVer readVersion(ByteBuffer buffer, String[] strings) {
+        long key = buffer.getLong();
+        if (key == SemVer.NO_PACKED_KEY) {
+            int major = buffer.getInt();
+            int minor = buffer.getInt();
+            int patch = buffer.getInt();
+            return SemVer.intern(SemVer.fromFields(major, minor, patch, readOptionalString(buffer, strings),
+                    readOptionalString(buffer, strings)));
+        }
+        String preRelease = readOptionalString(buffer, strings);
+        String buildMetadata = readOptionalString(buffer, strings);
+        return SemVer.intern(SemVer.fromPackedKey(key, preRelease, buildMetadata));
+    }
+
+    private static ImmutableSet<ModuleDependency> readDependencies(ByteBuffer buffer, String[] strings) {
+        int count = buffer.getInt();
+        ImmutableSet.Builder<ModuleDependency> dependencies = ImmutableSet.builder();
+        for (int i = 0; i < count; i++) {
+            String id = strings[buffer.getInt()];
+            int flags = buffer.get();
+            Range<SemVer> range;
+            if ((flags & HAS_LOWER) != 0 && (flags & HAS_UPPER) != 0) {
+                SemVer lower = readVersion(buffer, strings);
+                SemVer upper = readVersion(buffer, strings);
+                range = Range.range(lower, boundType(flags, LOWER_CLOSED), upper, boundType(flags, UPPER_CLOSED));
+            } else if ((flags & HAS_LOWER) != 0) {
+                range = Range.downTo(readVersion(buffer, strings), boundType(flags, LOWER_CLOSED));
+            } else if ((flags & HAS_UPPER) != 0) {
+                range = Range.upTo(readVersion(buffer, strings), boundType(flags, UPPER_CLOSED));
+            } else {
+                range = Range.all();
+            }
+            dependencies.add(ModuleDependency.intern(ModuleDependency.fromFields(id, range)));
+        }
+        return dependencies.build();
+    }
+
+    private static BoundType boundType(int flags, int closedFlag) {
+        return (flags & closedFlag) != 0 ? BoundType.CLOSED : BoundType.OPEN;
+    }
+
+    private BinaryModuleDescriptors() {
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+/**
+ * What {@link ModuleLoader} does when a lifecycle callback overruns its time
+ * budget.
+ * 
+ * @see LoadOptions#getModuleBudget()
+ * @see LoadOptions#getLoadBudget()
+ */
+public enum BudgetPolicy {
+
+    /**
+     * Log the overrun and keep waiting for the callback.
+     */
+    WARN,
+    /**
+     * Log the overrun, stop waiting and mark the module failed. The callback
+     * is left running on a daemon thread. Modules that depend on it are
+     * skipped. If it was {@link Module#onInit()}, {@link Module#onShutdown()}
+     * waits for it to return first.
+     */
+    ABANDON;
+
+}
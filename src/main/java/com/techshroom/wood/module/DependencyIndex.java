@@ -0,0 +1,113 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.util.BitSet;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Answers transitive dependency questions about a {@link ModuleGraph} without
+ * walking it. The transitive closure is precomputed as one bit set per module
+ * in each direction, indexed by ordinal, so it takes about {@code n * n / 4}
+ * bytes for {@code n} modules.
+ * <p>
+ * Ids are matched ignoring case, like {@link ModuleGraph#getModule(String)}.
+ * </p>
+ */
+public final class DependencyIndex {
+
+    static DependencyIndex of(ModuleGraph graph) {
+        return new DependencyIndex(graph);
+    }
+
+    private final ModuleGraph graph;
+    private final BitSet[] dependencies;
+    private final BitSet[] dependents;
+
+    private DependencyIndex(ModuleGraph graph) {
+        this.graph = graph;
+        int size = graph.size();
+        this.dependencies = new BitSet[size];
+        this.dependents = new BitSet[size];
+        // Dependencies always come earlier in dependency order, so each
+        // module's direct dependencies are complete by the time it is reached
+        for (int i = 0; i < size; i++) {
+            BitSet closure = new BitSet(size);
+            for (int dependency : graph.dependencyOrdinals(i)) {
+                closure.set(dependency);
+                closure.or(this.dependencies[dependency]);
+            }
+            this.dependencies[i] = closure;
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            BitSet closure = new BitSet(size);
+            for (int dependent : graph.dependentOrdinals(i)) {
+                closure.set(dependent);
+                closure.or(this.dependents[dependent]);
+            }
+            this.dependents[i] = closure;
+        }
+    }
+
+    /**
+     * @return {@code true} if {@code id} depends on {@code dependencyId},
+     *         directly or through other modules
+     */
+    public boolean dependsOn(String id, String dependencyId) {
+        return this.dependencies[ordinal(id)].get(ordinal(dependencyId));
+    }
+
+    /**
+     * @return every module that depends on {@code id}, directly or through
+     *         other modules, in dependency order
+     */
+    public ImmutableList<Module> dependentsOf(String id) {
+        return toModules(this.dependents[ordinal(id)]);
+    }
+
+    /**
+     * @return every module {@code id} depends on, directly or through other
+     *         modules, in dependency order
+     */
+    public ImmutableList<Module> transitiveDependencies(String id) {
+        return toModules(this.dependencies[ordinal(id)]);
+    }
+
+    private int ordinal(String id) {
+        Module module = this.graph.getModule(id)
+                .orElseThrow(() -> new IllegalArgumentException("No module with id " + id));
+        return this.graph.ordinal(module);
+    }
+
+    private ImmutableList<Module> toModules(BitSet ordinals) {
+        ImmutableList.Builder<Module> modules = ImmutableList.builder();
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            modules.add(this.graph.getDependencyOrder().get(i));
+        }
+        return modules.build();
+    }
+
+}
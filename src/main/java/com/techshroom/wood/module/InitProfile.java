@@ -0,0 +1,173 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Per-module {@link Module#onPreInit()} and {@link Module#onInit()} durations
+ * recorded by previous loads. {@link ModuleLoader} uses them to start the
+ * slowest dependency chains first.
+ * <p>
+ * The file format is a header line followed by one line per module:
+ * {@code <pre-init nanos> <init nanos> <id>}, separated by tabs.
+ * </p>
+ */
+public final class InitProfile {
+
+    private static final String HEADER = "# wood init profile v1";
+    private static final InitProfile EMPTY = new InitProfile(ImmutableMap.of());
+
+    @AutoValue
+    public static abstract class ModuleTiming {
+
+        public static ModuleTiming of(Duration preInit, Duration init) {
+            return new AutoValue_InitProfile_ModuleTiming(preInit, init);
+        }
+
+        ModuleTiming() {
+        }
+
+        public abstract Duration getPreInit();
+
+        public abstract Duration getInit();
+
+    }
+
+    public static InitProfile empty() {
+        return EMPTY;
+    }
+
+    public static InitProfile of(Map<String, ModuleTiming> timings) {
+        return new InitProfile(ImmutableMap.copyOf(timings));
+    }
+
+    /**
+     * Reads a profile. A missing file is an empty profile.
+     */
+    public static InitProfile load(Path file) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return EMPTY;
+        }
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            throw new IOException("Not an init profile: " + file);
+        }
+        ImmutableMap.Builder<String, ModuleTiming> timings = ImmutableMap.builder();
+        for (int i = 1; i < lines.size(); i++) {
+            String[] parts = lines.get(i).split("\t", 3);
+            if (parts.length != 3) {
+                throw new IOException("On line " + i + ": expected three tab-separated fields");
+            }
+            try {
+                timings.put(parts[2], ModuleTiming.of(Duration.ofNanos(Long.parseLong(parts[0])),
+                        Duration.ofNanos(Long.parseLong(parts[1]))));
+            } catch (NumberFormatException e) {
+                throw new IOException("On line " + i + ": invalid duration", e);
+            }
+        }
+        return new InitProfile(timings.build());
+    }
+
+    private final ImmutableMap<String, ModuleTiming> timings;
+
+    private InitProfile(ImmutableMap<String, ModuleTiming> timings) {
+        this.timings = timings;
+    }
+
+    public ImmutableMap<String, ModuleTiming> getTimings() {
+        return this.timings;
+    }
+
+    public Optional<ModuleTiming> getTiming(String id) {
+        return Optional.ofNullable(this.timings.get(id));
+    }
+
+    /**
+     * Folds a new run into this profile. Each module's durations become the
+     * average of the recorded and measured durations, so one slow run does not
+     * dominate. Modules that were not measured keep their recorded durations.
+     */
+    public InitProfile merge(Map<String, ModuleTiming> measured) {
+        ImmutableMap.Builder<String, ModuleTiming> merged = ImmutableMap.builder();
+        this.timings.forEach((id, timing) -> {
+            if (!measured.containsKey(id)) {
+                merged.put(id, timing);
+            }
+        });
+        measured.forEach((id, timing) -> {
+            ModuleTiming old = this.timings.get(id);
+            merged.put(id, old == null ? timing
+                    : ModuleTiming.of(old.getPreInit().plus(timing.getPreInit()).dividedBy(2),
+                            old.getInit().plus(timing.getInit()).dividedBy(2)));
+        });
+        return new InitProfile(merged.build());
+    }
+
+    /**
+     * Writes this profile, replacing the file atomically where the file
+     * system allows it.
+     */
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.write('\n');
+                for (Map.Entry<String, ModuleTiming> entry : this.timings.entrySet()) {
+                    ModuleTiming timing = entry.getValue();
+                    writer.write(timing.getPreInit().toNanos() + "\t" + timing.getInit().toNanos() + "\t"
+                            + entry.getKey() + "\n");
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tracks which modules of a {@link ModuleGraph} have been initialized, and
+ * initializes {@link Activation#LAZY lazy} modules on first lookup.
+ */
+final class LazyActivation {
+
+    private static final int INACTIVE = 0;
+    private static final int ACTIVATING = 1;
+    private static final int ACTIVE = 2;
+
+    private static final ThreadLocal<Boolean> IN_LOAD_CALLBACK = ThreadLocal.withInitial(() -> false);
+
+    private final ModuleGraph graph;
+    private final Consumer<Module> preInit;
+    private final Consumer<Module> init;
+    private final boolean[] eager;
+    private final AtomicIntegerArray state;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    /**
+     * @param preInit
+     *            - Runs {@link Module#onPreInit()}, handling exceptions
+     * @param init
+     *            - Runs {@link Module#onInit()}, handling exceptions
+     */
+    LazyActivation(ModuleGraph graph, Consumer<Module> preInit, Consumer<Module> init) {
+        this.graph = graph;
+        this.preInit = preInit;
+        this.init = init;
+        int size = graph.size();
+        this.eager = new boolean[size];
+        this.state = new AtomicIntegerArray(size);
+        // Dependencies come earlier in dependency order, so one backwards
+        // pass pulls in everything an eager module is loaded after
+        for (int i = size - 1; i >= 0; i--) {
+            if (graph.getDependencyOrder().get(i).getMetadata().getActivation() == Activation.EAGER) {
+                this.eager[i] = true;
+            }
+            if (this.eager[i]) {
+                this.state.set(i, ACTIVE);
+                for (int dependency : graph.dependencyOrdinals(i)) {
+                    this.eager[dependency] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the loader should initialize {@code module}
+     */
+    boolean isEager(Module module) {
+        return this.eager[this.graph.ordinal(module)];
+    }
+
+    /**
+     * Wraps a lifecycle callback run by the loader, so lookups of lazy
+     * modules from inside it can be rejected instead of deadlocking.
+     */
+    Consumer<Module> loadCallback(Consumer<Module> callback) {
+        return m -> {
+            IN_LOAD_CALLBACK.set(true);
+            try {
+                callback.accept(m);
+            } finally {
+                IN_LOAD_CALLBACK.set(false);
+            }
+        };
+    }
+
+    /**
+     * Called once the loader has initialized every eager module.
+     */
+    void loadFinished() {
+        this.loaded.countDown();
+    }
+
+    /**
+     * Returns {@code module}, initializing it and its uninitialized
+     * dependencies first if it is lazy. Outside of load callbacks, this waits
+     * for the loader to finish first, so eager modules are returned
+     * initialized. Callbacks run exactly once, on the thread that first looks
+     * the module up; other threads wait for them.
+     */
+    Module activate(Module module) {
+        int ordinal = this.graph.ordinal(module);
+        if (IN_LOAD_CALLBACK.get()) {
+            // Waiting would deadlock; declared dependencies are already
+            // initialized, anything else eager may not be yet
+            checkState(this.state.get(ordinal) == ACTIVE,
+                    "Lazy module %s was looked up while loading; declare it as a dependency",
+                    module.getMetadata().getId());
+            return module;
+        }
+        try {
+            // Eager modules are marked active before their callbacks run, and
+            // lazy modules may depend on eager modules that are not ready yet
+            this.loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for modules to load", e);
+        }
+        if (this.state.get(ordinal) == ACTIVE) {
+            return module;
+        }
+        synchronized (this) {
+            // ACTIVATING here means a callback on this thread looked the
+            // module up again, so it is returned as is
+            if (this.state.get(ordinal) != INACTIVE) {
+                return module;
+            }
+            List<Module> modules = new ArrayList<>();
+            ImmutableList<Module> dependencies =
+                    this.graph.getDependencyIndex().transitiveDependencies(module.getMetadata().getId());
+            for (Module dependency : dependencies) {
+                if (this.state.get(this.graph.ordinal(dependency)) == INACTIVE) {
+                    modules.add(dependency);
+                }
+            }
+            modules.add(module);
+            modules.forEach(m -> this.state.set(this.graph.ordinal(m), ACTIVATING));
+            try {
+                modules.forEach(this.preInit);
+                modules.forEach(this.init);
+            } finally {
+                modules.forEach(m -> this.state.set(this.graph.ordinal(m), ACTIVE));
+            }
+        }
+        return module;
+    }
+
+}
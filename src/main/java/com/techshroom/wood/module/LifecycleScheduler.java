@@ -0,0 +1,184 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs a lifecycle callback over a {@link ModuleGraph}, starting each module
+ * only after all of its dependencies have finished, or for
+ * {@link #runReverse reverse} runs, all of its dependents.
+ * <p>
+ * With more than one thread, ready modules are started in order of their
+ * critical path: their estimated duration plus the longest estimated chain of
+ * modules waiting on them. Starting the longest chain first keeps it from
+ * being left until last when there are more ready modules than threads.
+ * </p>
+ */
+final class LifecycleScheduler implements AutoCloseable {
+
+    private final ModuleGraph graph;
+    private final int parallelism;
+    private ExecutorService executor;
+
+    LifecycleScheduler(ModuleGraph graph, int parallelism) {
+        this.graph = graph;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Runs {@code action} for every module, each after its dependencies. With
+     * a single thread, modules run on the calling thread in dependency order.
+     * 
+     * @param estimateNanos
+     *            - The expected duration of {@code action} for a module
+     * @param action
+     *            - The callback; it should handle its own exceptions
+     * @return the measured duration of each module, indexed by ordinal
+     */
+    long[] run(ToLongFunction<Module> estimateNanos, Consumer<Module> action) {
+        return run(false, estimateNanos, action);
+    }
+
+    /**
+     * Runs {@code action} for every module, each after its dependents, as for
+     * {@link #run(ToLongFunction, Consumer)}.
+     */
+    long[] runReverse(ToLongFunction<Module> estimateNanos, Consumer<Module> action) {
+        return run(true, estimateNanos, action);
+    }
+
+    private int[] prerequisites(boolean reverse, int ordinal) {
+        return reverse ? this.graph.dependentOrdinals(ordinal) : this.graph.dependencyOrdinals(ordinal);
+    }
+
+    private int[] followers(boolean reverse, int ordinal) {
+        return reverse ? this.graph.dependencyOrdinals(ordinal) : this.graph.dependentOrdinals(ordinal);
+    }
+
+    private long[] run(boolean reverse, ToLongFunction<Module> estimateNanos, Consumer<Module> action) {
+        int size = this.graph.size();
+        long[] durations = new long[size];
+        if (this.parallelism == 1) {
+            for (int n = 0; n < size; n++) {
+                int i = reverse ? size - 1 - n : n;
+                durations[i] = timed(this.graph.getDependencyOrder().get(i), action);
+            }
+            return durations;
+        }
+        long[] criticalPath = criticalPaths(reverse, estimateNanos);
+        int[] remaining = new int[size];
+        PriorityQueue<Integer> ready = new PriorityQueue<>(Math.max(1, size), (a, b) -> {
+            int cmp = Long.compare(criticalPath[b], criticalPath[a]);
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        for (int i = 0; i < size; i++) {
+            remaining[i] = prerequisites(reverse, i).length;
+            if (remaining[i] == 0) {
+                ready.add(i);
+            }
+        }
+        BlockingQueue<Integer> finished = new LinkedBlockingQueue<>();
+        int running = 0;
+        int done = 0;
+        try {
+            while (done < size) {
+                while (running < this.parallelism && !ready.isEmpty()) {
+                    int ordinal = ready.poll();
+                    Module module = this.graph.getDependencyOrder().get(ordinal);
+                    executor().execute(() -> {
+                        try {
+                            durations[ordinal] = timed(module, action);
+                        } finally {
+                            finished.add(ordinal);
+                        }
+                    });
+                    running++;
+                }
+                int ordinal = finished.take();
+                running--;
+                done++;
+                for (int follower : followers(reverse, ordinal)) {
+                    if (--remaining[follower] == 0) {
+                        ready.add(follower);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running module lifecycle", e);
+        }
+        return durations;
+    }
+
+    /**
+     * The critical path of a module is its own estimate plus the largest
+     * critical path of the modules waiting on it.
+     */
+    private long[] criticalPaths(boolean reverse, ToLongFunction<Module> estimateNanos) {
+        int size = this.graph.size();
+        long[] criticalPath = new long[size];
+        // Followers always come later in run order
+        for (int n = size - 1; n >= 0; n--) {
+            int i = reverse ? size - 1 - n : n;
+            long longestFollower = 0;
+            for (int follower : followers(reverse, i)) {
+                longestFollower = Math.max(longestFollower, criticalPath[follower]);
+            }
+            criticalPath[i] = estimateNanos.applyAsLong(this.graph.getDependencyOrder().get(i)) + longestFollower;
+        }
+        return criticalPath;
+    }
+
+    private static long timed(Module module, Consumer<Module> action) {
+        long start = System.nanoTime();
+        action.accept(module);
+        return System.nanoTime() - start;
+    }
+
+    private ExecutorService executor() {
+        if (this.executor == null) {
+            this.executor = Executors.newFixedThreadPool(this.parallelism,
+                    new ThreadFactoryBuilder().setNameFormat("wood-lifecycle-%d").setDaemon(true).build());
+        }
+        return this.executor;
+    }
+
+    @Override
+    public void close() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+}
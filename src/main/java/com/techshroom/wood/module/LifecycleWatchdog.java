@@ -0,0 +1,222 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Guards lifecycle callbacks: enforces time budgets, and records failed
+ * modules so that modules depending on them are skipped.
+ * <p>
+ * A module fails if its callback throws, or if it is abandoned for overrunning
+ * its budget. A module is skipped, and counts as failed, if any of its
+ * dependencies failed. Since callbacks run in dependency order, checking
+ * direct dependencies is enough to skip every transitive dependent.
+ * </p>
+ */
+final class LifecycleWatchdog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LifecycleWatchdog.class);
+
+    private final Function<Module, ? extends Collection<Module>> dependencies;
+    private final long moduleBudgetNanos;
+    private final long loadBudgetNanos;
+    private final BudgetPolicy policy;
+    private final Set<Module> failed = ConcurrentHashMap.newKeySet();
+    private final Set<Module> unmodifiableFailed = Collections.unmodifiableSet(this.failed);
+    private final Map<Module, CompletableFuture<Void>> abandoned = new ConcurrentHashMap<>();
+    private volatile long loadDeadline = Long.MAX_VALUE;
+    private volatile boolean loading;
+    private ExecutorService callbacks;
+
+    /**
+     * @param dependencies
+     *            - Returns the modules a module is loaded after
+     */
+    LifecycleWatchdog(Function<Module, ? extends Collection<Module>> dependencies, @Nullable Duration moduleBudget,
+            @Nullable Duration loadBudget, BudgetPolicy policy) {
+        this.dependencies = dependencies;
+        this.moduleBudgetNanos = moduleBudget == null ? Long.MAX_VALUE : moduleBudget.toNanos();
+        this.loadBudgetNanos = loadBudget == null ? Long.MAX_VALUE : loadBudget.toNanos();
+        this.policy = policy;
+    }
+
+    /**
+     * Starts the load budget clock.
+     */
+    void loadStarted() {
+        this.loading = true;
+        if (this.loadBudgetNanos != Long.MAX_VALUE) {
+            this.loadDeadline = System.nanoTime() + this.loadBudgetNanos;
+        }
+    }
+
+    /**
+     * Stops the load budget clock. Later callbacks only have module budgets.
+     */
+    void loadFinished() {
+        this.loading = false;
+    }
+
+    Set<Module> getFailed() {
+        return this.unmodifiableFailed;
+    }
+
+    boolean isFailed(Module module) {
+        return this.failed.contains(module);
+    }
+
+    /**
+     * @return a future that completes once the abandoned callback of the
+     *         module returns, or {@code null} if the module was not abandoned
+     */
+    @Nullable
+    CompletableFuture<Void> getAbandoned(Module module) {
+        return this.abandoned.get(module);
+    }
+
+    /**
+     * @return {@code callback}, skipped for modules with failed dependencies
+     *         and run under the configured budgets. Budgeted callbacks run on
+     *         another thread, so thread-local state must be set up inside
+     *         {@code callback}.
+     */
+    Consumer<Module> guard(String phase, Consumer<Module> callback) {
+        return m -> {
+            if (this.failed.contains(m)) {
+                return;
+            }
+            for (Module dependency : this.dependencies.apply(m)) {
+                if (this.failed.contains(dependency)) {
+                    LOGGER.warn("Skipping " + phase + " for module " + m.getMetadata().getId()
+                            + ", a dependency failed");
+                    this.failed.add(m);
+                    return;
+                }
+            }
+            long budget = budgetNanos();
+            if (budget <= 0 && this.policy == BudgetPolicy.ABANDON) {
+                LOGGER.error("Skipping " + phase + " for module " + m.getMetadata().getId()
+                        + ", the load budget is exhausted");
+                this.failed.add(m);
+                return;
+            }
+            try {
+                if (budget == Long.MAX_VALUE) {
+                    callback.accept(m);
+                } else {
+                    runWithBudget(phase, m, callback, budget);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Error in " + phase + " for module " + m.getMetadata().getId(), e);
+                this.failed.add(m);
+            }
+        };
+    }
+
+    private long budgetNanos() {
+        if (!this.loading || this.loadDeadline == Long.MAX_VALUE) {
+            return this.moduleBudgetNanos;
+        }
+        return Math.min(this.moduleBudgetNanos, this.loadDeadline - System.nanoTime());
+    }
+
+    private void runWithBudget(String phase, Module m, Consumer<Module> callback, long budget) throws Exception {
+        // Claimed by whichever comes first, the callback starting or being
+        // abandoned, so the finished future completes either way
+        AtomicBoolean claimed = new AtomicBoolean();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        Future<?> future = callbacks().submit(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    callback.accept(m);
+                } finally {
+                    finished.complete(null);
+                }
+            }
+        });
+        try {
+            try {
+                future.get(Math.max(0, budget), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                String message = "Module " + m.getMetadata().getId() + " overran its " + phase + " budget of "
+                        + Duration.ofNanos(budget);
+                if (this.policy == BudgetPolicy.ABANDON) {
+                    LOGGER.error(message + ", abandoning it");
+                    this.failed.add(m);
+                    future.cancel(true);
+                    if (claimed.compareAndSet(false, true)) {
+                        finished.complete(null);
+                    }
+                    this.abandoned.put(m, finished);
+                    return;
+                }
+                LOGGER.warn(message + ", still waiting");
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), Exception.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted while waiting for module " + m.getMetadata().getId(), e);
+        }
+    }
+
+    private synchronized ExecutorService callbacks() {
+        if (this.callbacks == null) {
+            // Idle threads time out, so this never needs shutting down
+            this.callbacks = Executors.newCachedThreadPool(
+                    new ThreadFactoryBuilder().setNameFormat("wood-lifecycle-callback-%d").setDaemon(true).build());
+        }
+        return this.callbacks;
+    }
+
+}
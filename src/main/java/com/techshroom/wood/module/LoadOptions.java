@@ -0,0 +1,171 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import javax.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Options for {@link ModuleLoader#load(LoadOptions)}.
+ */
+@AutoValue
+public abstract class LoadOptions {
+
+    public static Builder builder() {
+        return new AutoValue_LoadOptions.Builder().parallelism(1).pipelined(false).warmupParallelism(1)
+                .shutdownTimeout(Duration.ofSeconds(10)).shutdownHook(false).budgetPolicy(BudgetPolicy.WARN);
+    }
+
+    public static LoadOptions defaults() {
+        return builder().build();
+    }
+
+    LoadOptions() {
+    }
+
+    /**
+     * @return the number of threads running {@link Module#onPreInit()} and
+     *         {@link Module#onInit()}. With one thread they run on the loading
+     *         thread, in dependency order.
+     */
+    public abstract int getParallelism();
+
+    /**
+     * @return {@code true} to pre-initialize modules while discovery is still
+     *         running, as soon as everything they require or are loaded after
+     *         has been pre-initialized. {@link Module#onPreInit()} order is
+     *         then not guaranteed for
+     *         {@link ModuleMetadata#getLoadBeforeModules() load-before}
+     *         entries: a module may be pre-initialized before a module that
+     *         must come before it. Such cases are logged once discovery ends,
+     *         not prevented. {@link Module#onInit()} order is unaffected.
+     */
+    public abstract boolean isPipelined();
+
+    /**
+     * @return a directory of plugin jars to discover modules from, in addition
+     *         to the classpath, or {@code null} for none. See
+     *         {@link PluginDirectory}.
+     */
+    @Nullable
+    public abstract Path getPluginDirectory();
+
+    /**
+     * @return the number of low-priority threads running
+     *         {@link Module#onWarmup()}
+     */
+    public abstract int getWarmupParallelism();
+
+    /**
+     * @return the time each {@link Module#onPreInit()} and
+     *         {@link Module#onInit()} call may take, or {@code null} for no
+     *         limit
+     */
+    @Nullable
+    public abstract Duration getModuleBudget();
+
+    /**
+     * @return the time the pre-init and init phases of
+     *         {@link ModuleLoader#load()} may take together, or {@code null}
+     *         for no limit. When {@link #isPipelined() pipelined}, pre-init
+     *         overlaps discovery, so the budget starts with discovery.
+     */
+    @Nullable
+    public abstract Duration getLoadBudget();
+
+    /**
+     * @return what happens when a budget is overrun
+     */
+    public abstract BudgetPolicy getBudgetPolicy();
+
+    /**
+     * @return how long {@link ModuleLoader#shutdown()} waits for each
+     *         module's {@link Module#onShutdown()} before moving on
+     */
+    public abstract Duration getShutdownTimeout();
+
+    /**
+     * @return {@code true} to call {@link ModuleLoader#shutdown()} from a JVM
+     *         shutdown hook
+     */
+    public abstract boolean isShutdownHook();
+
+    /**
+     * @return the {@link InitProfile} file to schedule from and to update
+     *         with this load's durations, or {@code null} to not use one
+     */
+    @Nullable
+    public abstract Path getProfile();
+
+    public abstract Builder toBuilder();
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+
+        Builder() {
+        }
+
+        public abstract Builder parallelism(int parallelism);
+
+        public abstract Builder pipelined(boolean pipelined);
+
+        public abstract Builder pluginDirectory(@Nullable Path pluginDirectory);
+
+        public abstract Builder warmupParallelism(int warmupParallelism);
+
+        public abstract Builder moduleBudget(@Nullable Duration moduleBudget);
+
+        public abstract Builder loadBudget(@Nullable Duration loadBudget);
+
+        public abstract Builder budgetPolicy(BudgetPolicy budgetPolicy);
+
+        public abstract Builder shutdownTimeout(Duration shutdownTimeout);
+
+        public abstract Builder shutdownHook(boolean shutdownHook);
+
+        public abstract Builder profile(@Nullable Path profile);
+
+        abstract LoadOptions autoBuild();
+
+        public final LoadOptions build() {
+            LoadOptions options = autoBuild();
+            checkArgument(options.getParallelism() >= 1, "parallelism must be at least 1, got %s",
+                    options.getParallelism());
+            checkArgument(options.getWarmupParallelism() >= 1, "warmup parallelism must be at least 1, got %s",
+                    options.getWarmupParallelism());
+            checkArgument(!options.getShutdownTimeout().isNegative(), "shutdown timeout must not be negative, got %s",
+                    options.getShutdownTimeout());
+            return options;
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.time.Duration;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+import com.techshroom.wood.module.InitProfile.ModuleTiming;
+
+/**
+ * Wall-clock time spent in each phase of {@link ModuleLoader#load()}.
+ */
+@AutoValue
+public abstract class LoadTimings {
+
+    static LoadTimings of(int moduleCount, Duration discovery, Duration solve, Duration inject, Duration preInit,
+            Duration init, ImmutableMap<String, ModuleTiming> moduleTimings) {
+        return new AutoValue_LoadTimings(moduleCount, discovery, solve, inject, preInit, init, moduleTimings);
+    }
+
+    LoadTimings() {
+    }
+
+    /**
+     * @return the number of modules that were discovered
+     */
+    public abstract int getModuleCount();
+
+    /**
+     * @return the time spent finding, loading and instantiating modules
+     */
+    public abstract Duration getDiscovery();
+
+    /**
+     * @return the time spent computing the dependency order
+     */
+    public abstract Duration getSolve();
+
+    /**
+     * @return the time spent injecting dependencies
+     */
+    public abstract Duration getInject();
+
+    /**
+     * @return the time spent in {@link Module#onPreInit()}
+     */
+    public abstract Duration getPreInit();
+
+    /**
+     * @return the time spent in {@link Module#onInit()}
+     */
+    public abstract Duration getInit();
+
+    /**
+     * @return the time each module spent in its lifecycle callbacks, keyed by
+     *         id
+     */
+    public abstract ImmutableMap<String, ModuleTiming> getModuleTimings();
+
+    /**
+     * @return the time spent in all phases
+     */
+    public final Duration getTotal() {
+        return getDiscovery().plus(getSolve()).plus(getInject()).plus(getPreInit()).plus(getInit());
+    }
+
+}
@@ -41,4 +41,20 @@ public interface Module {
     default void onInit() {
     }
 
+    /**
+     * Called on a low-priority background thread after all mods have been
+     * init'd. Loading does not wait for it, so use it to fill caches or open
+     * connections ahead of the first request. Lazy modules initialized after
+     * loading are not warmed up.
+     */
+    default void onWarmup() {
+    }
+
+    /**
+     * Called by {@link ModuleLoader#shutdown()} after any mods that depend on
+     * this one have been shut down. Only called for mods that were init'd.
+     */
+    default void onShutdown() {
+    }
+
 }
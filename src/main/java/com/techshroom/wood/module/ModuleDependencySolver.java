@@ -26,25 +26,18 @@ package com.techshroom.wood.module;
 
 import static com.google.common.base.Preconditions.checkState;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Range;
-import com.google.common.collect.Sets;
-import com.google.common.graph.EndpointPair;
 import com.google.common.graph.GraphBuilder;
 import com.google.common.graph.MutableGraph;
 import com.techshroom.wood.ModuleDependency;
-import com.techshroom.wood.SemVer;
 
 @VisibleForTesting
 class ModuleDependencySolver {
@@ -56,127 +49,107 @@ class ModuleDependencySolver {
     }
 
     ImmutableList<Module> computeDependencyOrder() {
-        // Fast-track no module case
-        if (this.moduleMap.isEmpty()) {
-            return ImmutableList.of();
+        return solve().getDependencyOrder();
+    }
+
+    ModuleGraph solve() {
+        MutableGraph<ModuleMetadata> depGraph = buildDependencyGraph();
+        // Kahn's algorithm: a module is ready once all of its dependencies
+        // (the outgoing edges) have been placed in the order
+        Map<ModuleMetadata, Integer> remainingDeps = new HashMap<>(depGraph.nodes().size() * 2);
+        Deque<ModuleMetadata> ready = new ArrayDeque<>();
+        for (Module module : this.moduleMap.values()) {
+            ModuleMetadata node = module.getMetadata();
+            int outDegree = depGraph.outDegree(node);
+            if (outDegree == 0) {
+                ready.add(node);
+            } else {
+                remainingDeps.put(node, outDegree);
+            }
         }
-        // If a node goes from A->B, A must be loaded AFTER B
+        checkState(!ready.isEmpty() || this.moduleMap.isEmpty(),
+                "There must be at least one module with no dependencies.");
+        ImmutableList.Builder<Module> dependencyOrder = ImmutableList.builder();
+        while (!ready.isEmpty()) {
+            ModuleMetadata node = ready.poll();
+            dependencyOrder.add(this.moduleMap.get(node.getId()));
+            for (ModuleMetadata dependent : depGraph.predecessors(node)) {
+                int left = remainingDeps.get(dependent) - 1;
+                if (left == 0) {
+                    remainingDeps.remove(dependent);
+                    ready.add(dependent);
+                } else {
+                    remainingDeps.put(dependent, left);
+                }
+            }
+        }
+        // Anything left is part of, or depends on, a cycle
+        if (!remainingDeps.isEmpty()) {
+            throw new IllegalStateException("Unsatisfied dependencies: " + remainingDeps.keySet());
+        }
+        return ModuleGraph.of(dependencyOrder.build(), depGraph);
+    }
+
+    /**
+     * Builds the dependency graph. If a node goes from A->B, A must be loaded
+     * AFTER B.
+     */
+    private MutableGraph<ModuleMetadata> buildDependencyGraph() {
         MutableGraph<ModuleMetadata> depGraph =
                 GraphBuilder.directed().allowsSelfLoops(false).expectedNodeCount(this.moduleMap.size()).build();
         // Insert all nodes before connecting
         this.moduleMap.values().stream().map(Module::getMetadata).forEach(depGraph::addNode);
         for (Module factory : this.moduleMap.values()) {
             ModuleMetadata data = factory.getMetadata();
-            data.getLoadAfterModules().forEach(dep -> {
-                Range<SemVer> acceptable = dep.getVersionRange();
+            for (ModuleDependency dep : data.getLoadAfterModules()) {
                 // Here, we must load data after meta, put data->meta
-                depGraph.nodes().stream().filter(meta -> acceptable.contains(meta.getVersion())).findAny()
-                        .ifPresent(meta -> {
-                            // Do a check for existing edges going the other
-                            // way
-                            if (depGraph.edges().contains(EndpointPair.ordered(meta, data))) {
-                                throw new IllegalStateException("Cannot have a two-way dependency. Found between "
-                                        + Modules.getBasicRepresentation(data) + " and "
-                                        + Modules.getBasicRepresentation(meta));
-                            }
-                            depGraph.putEdge(data, meta);
-                        });
-            });
-            data.getLoadBeforeModules().forEach(dep -> {
-                Range<SemVer> acceptable = dep.getVersionRange();
+                ModuleMetadata meta = findSatisfying(dep);
+                if (meta != null) {
+                    putEdge(depGraph, data, meta);
+                }
+            }
+            for (ModuleDependency dep : data.getLoadBeforeModules()) {
                 // Here, we must load data before meta, put meta->data
-                depGraph.nodes().stream().filter(meta -> acceptable.contains(meta.getVersion())).findAny()
-                        .ifPresent(meta -> {
-                            // Do a check for existing edges going the other
-                            // way
-                            if (depGraph.edges().contains(EndpointPair.ordered(data, meta))) {
-                                throw new IllegalStateException("Cannot have a two-way dependency. Found between "
-                                        + Modules.getBasicRepresentation(data) + " and "
-                                        + Modules.getBasicRepresentation(meta));
-                            }
-                            depGraph.putEdge(meta, data);
-                        });
-            });
-            data.getRequiredModules().forEach(dep -> {
-                Range<SemVer> acceptable = dep.getVersionRange();
-                // Here, we must load data after meta, put data->meta
-                ModuleMetadata result = depGraph.nodes().stream().filter(meta -> acceptable.contains(meta.getVersion()))
-                        .findAny().orElseThrow(() -> {
-                            return new IllegalStateException("Missing required dependency " + dep);
-                        });
-                // Do a check for existing edges going the other
-                // way
-                if (depGraph.edges().contains(EndpointPair.ordered(result, data))) {
-                    throw new IllegalStateException("Cannot have a two-way dependency. Found between "
-                            + Modules.getBasicRepresentation(data) + " and " + Modules.getBasicRepresentation(result));
+                ModuleMetadata meta = findSatisfying(dep);
+                if (meta != null) {
+                    putEdge(depGraph, meta, data);
                 }
-                depGraph.putEdge(data, result);
-            });
-        }
-        // Modules in dependency-loading order
-        List<ModuleMetadata> dependencyOrder = new LinkedList<>();
-        // The outDegree is the number of dependencies
-        Set<ModuleMetadata> noDeps =
-                depGraph.nodes().stream().filter(m -> depGraph.outDegree(m) == 0).collect(Collectors.toSet());
-        checkState(!noDeps.isEmpty(), "There must be at least one module with no dependencies.");
-        // this set tracks encountered modules (i.e. child nodes)
-        // that have not been known as satisfied by things in depedencyOrder
-        Set<ModuleMetadata> encounteredNotSatisfied = new HashSet<>();
-        // this set tracks satisfied modules
-        // (but not yet added to dependencyOrder)
-        // that have not been processed to find other modules
-        Set<ModuleMetadata> satisfiedNotProcessed = new HashSet<>(noDeps);
-        // Snapshots the last round hashcode for checks
-        int lastDepOrderSize = 0;
-        while (!satisfiedNotProcessed.isEmpty()
-                || lastDepOrderSize != Objects.hash(dependencyOrder, encounteredNotSatisfied, satisfiedNotProcessed)) {
-            lastDepOrderSize = Objects.hash(dependencyOrder, encounteredNotSatisfied, satisfiedNotProcessed);
-            // Process satisfied modules
-            for (ModuleMetadata node : satisfiedNotProcessed) {
-                dependencyOrder.add(node);
-                // Load modules that depend on `node`
-                // insert them into encountered
-                depGraph.predecessors(node).forEach(dependent -> {
-                    encounteredNotSatisfied.add(dependent);
-                });
             }
-            // Clear satisfiedNotProcessed, after processing
-            satisfiedNotProcessed.clear();
-            // Process encountered nodes
-            for (ModuleMetadata node : encounteredNotSatisfied) {
-                // Calculate the load-after deps that might be satisfiable
-                // Basically does a ID check against the available
-                // dependencies.
-                Set<ModuleDependency> satisfiableLoadAfters =
-                        getSatisfiableLoadAfters(depGraph.nodes(), node.getLoadAfterModules());
-                Set<ModuleDependency> deps = Sets.union(satisfiableLoadAfters, node.getRequiredModules());
-                if (allDependenciesSatisified(dependencyOrder, deps)) {
-                    satisfiedNotProcessed.add(node);
+            for (ModuleDependency dep : data.getRequiredModules()) {
+                // Here, we must load data after meta, put data->meta
+                ModuleMetadata meta = findSatisfying(dep);
+                if (meta == null) {
+                    throw new IllegalStateException("Missing required dependency " + dep);
                 }
+                putEdge(depGraph, data, meta);
             }
-            // Remove all satisfied
-            encounteredNotSatisfied.removeAll(satisfiedNotProcessed);
         }
-        if (encounteredNotSatisfied.size() > 0) {
-            throw new IllegalStateException("Unsatisfied dependencies: " + encounteredNotSatisfied);
+        return depGraph;
+    }
+
+    @Nullable
+    private ModuleMetadata findSatisfying(ModuleDependency dep) {
+        // Ids are unique, so only the module with the same id can match
+        Module module = this.moduleMap.get(dep.getId());
+        if (module == null) {
+            return null;
         }
-        return FluentIterable.from(dependencyOrder).transform(ModuleMetadata::getId).transform(this.moduleMap::get)
-                .toList();
+        ModuleMetadata meta = module.getMetadata();
+        return satisfies(meta, dep) ? meta : null;
     }
 
-    private Set<ModuleDependency>
-            getSatisfiableLoadAfters(Collection<ModuleMetadata> available, Set<ModuleDependency> loadAfters) {
-        Set<String> decomposedDeps = available.stream().map(ModuleMetadata::getId).collect(Collectors.toSet());
-        return loadAfters.stream().filter(dep -> decomposedDeps.contains(dep.getId())).collect(Collectors.toSet());
+    private static void putEdge(MutableGraph<ModuleMetadata> depGraph, ModuleMetadata after, ModuleMetadata before) {
+        // Do a check for existing edges going the other way
+        if (depGraph.successors(before).contains(after)) {
+            throw new IllegalStateException("Cannot have a two-way dependency. Found between "
+                    + Modules.getBasicRepresentation(after) + " and " + Modules.getBasicRepresentation(before));
+        }
+        depGraph.putEdge(after, before);
     }
 
-    private boolean allDependenciesSatisified(Collection<ModuleMetadata> available, Set<ModuleDependency> required) {
-        Map<String, SemVer> decomposedDeps =
-                available.stream().collect(Collectors.toMap(ModuleMetadata::getId, ModuleMetadata::getVersion));
-        return required.stream().allMatch(dep -> {
-            SemVer ver = decomposedDeps.get(dep.getId());
-            return ver != null && dep.getVersionRange().contains(ver);
-        });
+    private static boolean satisfies(ModuleMetadata meta, ModuleDependency dep) {
+        // Ids match case-insensitively, like the loader's module map
+        return meta.getId().equalsIgnoreCase(dep.getId()) && dep.getVersionMatcher().matches(meta.getVersion());
     }
 
 }
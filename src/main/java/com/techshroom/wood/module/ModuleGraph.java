@@ -0,0 +1,198 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.graph.Graph;
+
+/**
+ * A solved module graph: the modules in dependency order, and the direct
+ * dependency edges between them. Every module has a dense ordinal, its
+ * position in the dependency order.
+ */
+public final class ModuleGraph {
+
+    private static final int[] NONE = new int[0];
+
+    /**
+     * Solves the dependency order of {@code modules}.
+     * 
+     * @throws IllegalStateException
+     *             if a required module is missing, or the dependencies form a
+     *             cycle
+     */
+    public static ModuleGraph solve(Collection<? extends Module> modules) {
+        Map<String, Module> moduleMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Module module : modules) {
+            Module old = moduleMap.put(module.getMetadata().getId(), module);
+            checkArgument(old == null, "duplicate module id %s", module.getMetadata().getId());
+        }
+        return new ModuleDependencySolver(moduleMap).solve();
+    }
+
+    /**
+     * @param order
+     *            - the modules, in dependency order
+     * @param depGraph
+     *            - the graph the order was solved from; an edge A->B means A
+     *            is loaded after B
+     */
+    static ModuleGraph of(ImmutableList<Module> order, Graph<ModuleMetadata> depGraph) {
+        return new ModuleGraph(order, depGraph);
+    }
+
+    private final ImmutableList<Module> order;
+    private final ImmutableMap<Module, Integer> ordinals;
+    private final ImmutableSortedMap<String, Module> byId;
+    private final int[][] dependencies;
+    private final int[][] dependents;
+    private volatile DependencyIndex dependencyIndex;
+
+    private ModuleGraph(ImmutableList<Module> order, Graph<ModuleMetadata> depGraph) {
+        this.order = order;
+        ImmutableMap.Builder<Module, Integer> ordinals = ImmutableMap.builder();
+        ImmutableSortedMap.Builder<String, Module> byId = ImmutableSortedMap.orderedBy(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < order.size(); i++) {
+            Module module = order.get(i);
+            ordinals.put(module, i);
+            byId.put(module.getMetadata().getId(), module);
+        }
+        this.ordinals = ordinals.build();
+        this.byId = byId.build();
+        this.dependencies = new int[order.size()][];
+        this.dependents = new int[order.size()][];
+        for (int i = 0; i < order.size(); i++) {
+            ModuleMetadata meta = order.get(i).getMetadata();
+            this.dependencies[i] = toOrdinals(depGraph.successors(meta));
+            this.dependents[i] = toOrdinals(depGraph.predecessors(meta));
+        }
+    }
+
+    private int[] toOrdinals(Iterable<ModuleMetadata> nodes) {
+        int[] result = NONE;
+        int size = 0;
+        for (ModuleMetadata node : nodes) {
+            if (size == result.length) {
+                result = Arrays.copyOf(result, Math.max(4, size * 2));
+            }
+            result[size++] = this.ordinals.get(this.byId.get(node.getId()));
+        }
+        result = size == result.length ? result : Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return the number of modules
+     */
+    public int size() {
+        return this.order.size();
+    }
+
+    /**
+     * @return every module, each after all of its dependencies
+     */
+    public ImmutableList<Module> getDependencyOrder() {
+        return this.order;
+    }
+
+    /**
+     * @return the module with the given id, ignoring case
+     */
+    public Optional<Module> getModule(String id) {
+        return Optional.ofNullable(this.byId.get(id));
+    }
+
+    /**
+     * @return the modules {@code module} is loaded after, in dependency order
+     */
+    public ImmutableList<Module> getDependencies(Module module) {
+        return toModules(this.dependencies[ordinal(module)]);
+    }
+
+    /**
+     * @return the modules loaded after {@code module} because of it, in
+     *         dependency order
+     */
+    public ImmutableList<Module> getDependents(Module module) {
+        return toModules(this.dependents[ordinal(module)]);
+    }
+
+    /**
+     * @return the transitive dependency index of this graph, computed on first
+     *         use
+     */
+    public DependencyIndex getDependencyIndex() {
+        DependencyIndex index = this.dependencyIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = this.dependencyIndex;
+                if (index == null) {
+                    this.dependencyIndex = index = DependencyIndex.of(this);
+                }
+            }
+        }
+        return index;
+    }
+
+    private ImmutableList<Module> toModules(int[] ordinals) {
+        ImmutableList.Builder<Module> modules = ImmutableList.builder();
+        for (int ordinal : ordinals) {
+            modules.add(this.order.get(ordinal));
+        }
+        return modules.build();
+    }
+
+    int ordinal(Module module) {
+        Integer ordinal = this.ordinals.get(module);
+        checkArgument(ordinal != null, "%s is not part of this graph", Modules.getBasicRepresentation(module));
+        return ordinal;
+    }
+
+    /**
+     * The returned array must not be modified.
+     */
+    int[] dependencyOrdinals(int ordinal) {
+        return this.dependencies[ordinal];
+    }
+
+    /**
+     * The returned array must not be modified.
+     */
+    int[] dependentOrdinals(int ordinal) {
+        return this.dependents[ordinal];
+    }
+
+}
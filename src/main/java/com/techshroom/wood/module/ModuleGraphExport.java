@@ -0,0 +1,344 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.techshroom.wood.module.InitProfile.ModuleTiming;
+
+/**
+ * Exports a {@link ModuleGraph} as DOT or JSON, weighted by measured
+ * lifecycle durations, with a critical path analysis.
+ * <p>
+ * A module's weight is its combined {@link Module#onPreInit()} and
+ * {@link Module#onInit()} duration from an {@link InitProfile}; modules
+ * without a timing weigh nothing. The critical path is the chain of
+ * dependencies with the largest total weight, which bounds startup time no
+ * matter how many threads run it. A module's slack is how much longer it could
+ * take without lengthening the critical path. Modules on the critical path
+ * have none.
+ * </p>
+ * <p>
+ * Edges point from a module to the modules it depends on.
+ * </p>
+ */
+public final class ModuleGraphExport {
+
+    public static ModuleGraphExport of(ModuleGraph graph, InitProfile profile) {
+        return new ModuleGraphExport(graph, profile);
+    }
+
+    private final ModuleGraph graph;
+    private final long[] weight;
+    private final long[] earliestStart;
+    private final long[] slack;
+    private final long length;
+    private final ImmutableList<Module> criticalPath;
+    private final boolean[] critical;
+
+    private ModuleGraphExport(ModuleGraph graph, InitProfile profile) {
+        this.graph = graph;
+        int size = graph.size();
+        this.weight = new long[size];
+        this.earliestStart = new long[size];
+        long[] earliestFinish = new long[size];
+        long length = 0;
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            this.weight[i] = profile.getTiming(module(i).getMetadata().getId())
+                    .map(t -> t.getPreInit().plus(t.getInit()).toNanos()).orElse(0L);
+            for (int dependency : graph.dependencyOrdinals(i)) {
+                this.earliestStart[i] = Math.max(this.earliestStart[i], earliestFinish[dependency]);
+            }
+            earliestFinish[i] = this.earliestStart[i] + this.weight[i];
+            // On ties prefer the module latest in dependency order
+            if (earliestFinish[i] >= length) {
+                length = earliestFinish[i];
+                last = i;
+            }
+        }
+        this.length = length;
+        // Latest start, walking back from the modules nothing depends on
+        long[] latestStart = new long[size];
+        this.slack = new long[size];
+        for (int i = size - 1; i >= 0; i--) {
+            long latestFinish = length;
+            for (int dependent : graph.dependentOrdinals(i)) {
+                latestFinish = Math.min(latestFinish, latestStart[dependent]);
+            }
+            latestStart[i] = latestFinish - this.weight[i];
+            this.slack[i] = latestStart[i] - this.earliestStart[i];
+        }
+        // Trace the critical path back from the module that finishes last
+        this.critical = new boolean[size];
+        List<Module> path = new ArrayList<>();
+        for (int i = last; i >= 0;) {
+            this.critical[i] = true;
+            path.add(module(i));
+            int next = -1;
+            for (int dependency : graph.dependencyOrdinals(i)) {
+                if (earliestFinish[dependency] == this.earliestStart[i]
+                        && (next < 0 || earliestFinish[dependency] > earliestFinish[next])) {
+                    next = dependency;
+                }
+            }
+            i = next;
+        }
+        this.criticalPath = ImmutableList.copyOf(Lists.reverse(path));
+    }
+
+    private Module module(int ordinal) {
+        return this.graph.getDependencyOrder().get(ordinal);
+    }
+
+    public ModuleGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * @return the heaviest chain of modules, each depending on the one before
+     */
+    public ImmutableList<Module> getCriticalPath() {
+        return this.criticalPath;
+    }
+
+    /**
+     * @return the total weight of the critical path
+     */
+    public Duration getCriticalPathDuration() {
+        return Duration.ofNanos(this.length);
+    }
+
+    /**
+     * @return how much longer {@code module} could take without lengthening
+     *         the critical path
+     */
+    public Duration getSlack(Module module) {
+        return Duration.ofNanos(this.slack[this.graph.ordinal(module)]);
+    }
+
+    /**
+     * @return the sum of the slack of every module
+     */
+    public Duration getTotalSlack() {
+        long total = 0;
+        for (long s : this.slack) {
+            total += s;
+        }
+        return Duration.ofNanos(total);
+    }
+
+    public String toDot() {
+        StringBuilder dot = new StringBuilder();
+        dot.append("digraph modules {\n");
+        dot.append("    // critical path ").append(formatMillis(this.length)).append(", total slack ")
+                .append(formatMillis(getTotalSlack().toNanos())).append('\n');
+        dot.append("    node [shape=box];\n");
+        for (int i = 0; i < this.graph.size(); i++) {
+            ModuleMetadata meta = module(i).getMetadata();
+            dot.append("    ").append(dotString(meta.getId())).append(" [label=")
+                    .append(dotString(meta.getId() + "\n" + meta.getVersion() + "\n" + formatMillis(this.weight[i])
+                            + ", slack " + formatMillis(this.slack[i])));
+            if (this.critical[i]) {
+                dot.append(", color=red, penwidth=2");
+            }
+            dot.append("];\n");
+        }
+        for (int i = 0; i < this.graph.size(); i++) {
+            for (int dependency : this.graph.dependencyOrdinals(i)) {
+                dot.append("    ").append(dotString(module(i).getMetadata().getId())).append(" -> ")
+                        .append(dotString(module(dependency).getMetadata().getId()));
+                if (this.critical[i] && this.critical[dependency]) {
+                    dot.append(" [color=red, penwidth=2]");
+                }
+                dot.append(";\n");
+            }
+        }
+        return dot.append("}\n").toString();
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"criticalPathNanos\": ").append(this.length);
+        json.append(",\n  \"totalSlackNanos\": ").append(getTotalSlack().toNanos());
+        json.append(",\n  \"criticalPath\": ");
+        jsonIds(json, this.criticalPath);
+        json.append(",\n  \"modules\": [");
+        for (int i = 0; i < this.graph.size(); i++) {
+            Module module = module(i);
+            ModuleMetadata meta = module.getMetadata();
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"id\": ").append(jsonString(meta.getId()));
+            json.append(", \"version\": ").append(jsonString(meta.getVersion().toString()));
+            json.append(", \"weightNanos\": ").append(this.weight[i]);
+            json.append(", \"slackNanos\": ").append(this.slack[i]);
+            json.append(", \"critical\": ").append(this.critical[i]);
+            json.append(", \"dependencies\": ");
+            jsonIds(json, this.graph.getDependencies(module));
+            json.append('}');
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1e6);
+    }
+
+    private static String dotString(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+    }
+
+    private static void jsonIds(StringBuilder json, List<Module> modules) {
+        json.append(modules.stream().map(m -> jsonString(m.getMetadata().getId()))
+                .collect(Collectors.joining(", ", "[", "]")));
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Exports the modules on the classpath, or the modules described by the
+     * given descriptor files and the descriptors in a plugin directory.
+     * <p>
+     * Usage:
+     * {@code ModuleGraphExport [--format dot|json] [--profile FILE] [--output FILE] [--plugins DIR] [DESCRIPTOR...]}
+     * </p>
+     */
+    public static void main(String[] args) throws Exception {
+        String format = "dot";
+        Path profileFile = null;
+        Path output = null;
+        Path plugins = null;
+        List<Path> descriptors = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format":
+                    format = optionValue(args, i++);
+                    break;
+                case "--profile":
+                    profileFile = Paths.get(optionValue(args, i++));
+                    break;
+                case "--output":
+                    output = Paths.get(optionValue(args, i++));
+                    break;
+                case "--plugins":
+                    plugins = Paths.get(optionValue(args, i++));
+                    break;
+                default:
+                    descriptors.add(Paths.get(args[i]));
+                    break;
+            }
+        }
+        if (!format.equals("dot") && !format.equals("json")) {
+            throw new IllegalArgumentException("Unknown format " + format + ", expected dot or json");
+        }
+        InitProfile profile = profileFile == null ? InitProfile.empty() : InitProfile.load(profileFile);
+        List<Module> modules;
+        if (descriptors.isEmpty() && plugins == null) {
+            modules = classpathModules();
+        } else {
+            modules = new ArrayList<>(descriptorModules(descriptors));
+            if (plugins != null) {
+                modules.addAll(pluginModules(plugins));
+            }
+        }
+        ModuleGraphExport export = of(ModuleGraph.solve(modules), profile);
+        String text = format.equals("dot") ? export.toDot() : export.toJson();
+        if (output == null) {
+            System.out.print(text);
+        } else {
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                writer.write(text);
+            }
+        }
+    }
+
+    private static String optionValue(String[] args, int option) {
+        checkArgument(option + 1 < args.length, "missing value for %s", args[option]);
+        return args[option + 1];
+    }
+
+    private static List<Module> classpathModules() {
+        Map<String, Module> modules = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Module module : ServiceLoader.load(Module.class)) {
+            modules.putIfAbsent(module.getMetadata().getId(), module);
+        }
+        return new ArrayList<>(modules.values());
+    }
+
+    private static List<Module> descriptorModules(List<Path> descriptors) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return Modules.getModuleMetadataFromPaths(descriptors, executor).getMetadataOrThrow().stream()
+                    .map(meta -> (Module) () -> meta).collect(Collectors.toList());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Module> pluginModules(Path directory) throws IOException {
+        // Only the descriptors are read, so no plugin class outlives the loader
+        try (PluginDirectory plugins = PluginDirectory.scan(directory, Runtime.getRuntime().availableProcessors())) {
+            if (!plugins.getErrors().isEmpty()) {
+                IOException error = new IOException("Failed to read plugin jars " + plugins.getErrors().keySet());
+                plugins.getErrors().values().forEach(error::addSuppressed);
+                throw error;
+            }
+            return plugins.getDescriptors().stream().map(meta -> (Module) () -> meta).collect(Collectors.toList());
+        }
+    }
+
+}
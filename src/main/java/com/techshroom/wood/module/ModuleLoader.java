@@ -24,18 +24,46 @@
  */
 package com.techshroom.wood.module;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.techshroom.wood.module.InitProfile.ModuleTiming;
+
 /**
- * Loads {@link Module Modules} using {@link ServiceLoader}.
+ * Loads {@link Module Modules} using {@link ServiceLoader}, and from a
+ * {@linkplain LoadOptions#getPluginDirectory() plugin directory} if one is
+ * set.
  * <p>
  * Note: Module discovery DOES NOT OCCUR until {@link #load()} has been called.
  * </p>
@@ -46,45 +74,398 @@ public final class ModuleLoader {
 
     private static final Object LOAD_LOCK = new Object();
     private static boolean initialized;
-    private static final Map<String, Module> moduleMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    // Concurrent, since pipelined pre-init reads it during discovery
+    private static final Map<String, Module> moduleMap = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
     private static final Map<String, Module> unmodifiableModuleMap = Collections.unmodifiableMap(moduleMap);
-    private static List<Module> dependencyOrder;
+    private static volatile ModuleGraph moduleGraph;
+    private static volatile LazyActivation lazyActivation;
+    private static volatile LifecycleWatchdog watchdog;
+    private static volatile LoadTimings loadTimings;
+    private static final CompletableFuture<Void> warmup = new CompletableFuture<>();
+    private static final Map<Module, Warmup> warmups = new ConcurrentHashMap<>();
+    private static volatile LoadOptions loadOptions;
+    /** Modules whose onInit has run, and so need onShutdown. */
+    private static final Set<Module> initializedModules = ConcurrentHashMap.newKeySet();
+    private static final Object SHUTDOWN_LOCK = new Object();
+    private static boolean shutDown;
 
+    /**
+     * @return every discovered module, keyed by id. {@link Activation#LAZY
+     *         Lazy} modules in this map may not be initialized; use
+     *         {@link #getModule(String)} to look them up.
+     */
     public static Map<String, Module> getAllModules() {
         return unmodifiableModuleMap;
     }
 
+    /**
+     * Looks up a module by id, ignoring case. A {@link Activation#LAZY lazy}
+     * module, and any of its dependencies that are not initialized, are
+     * initialized by the first lookup.
+     * <p>
+     * If {@link #load()} is initializing modules, the lookup waits for it to
+     * finish. Lookups from lifecycle callbacks run by {@link #load()} do not
+     * wait: only the running module's dependencies are sure to be initialized
+     * there. Before {@link #load()} has solved the module graph, which
+     * happens after discovery, the lookup returns empty without waiting.
+     * </p>
+     * 
+     * @return the module, or empty if the module graph is not solved yet or
+     *         there is no such module
+     * @throws IllegalStateException
+     *             if an uninitialized lazy module is looked up from a
+     *             lifecycle callback run by {@link #load()}
+     */
+    public static Optional<Module> getModule(String id) {
+        LazyActivation activation = lazyActivation;
+        if (activation == null) {
+            return Optional.empty();
+        }
+        return moduleGraph.getModule(id).map(activation::activate);
+    }
+
+    /**
+     * @return how long each phase of {@link #load()} took, once loading has
+     *         finished
+     */
+    public static Optional<LoadTimings> getLoadTimings() {
+        return Optional.ofNullable(loadTimings);
+    }
+
+    /**
+     * @return the modules whose lifecycle callbacks threw or overran their
+     *         budget under {@link BudgetPolicy#ABANDON}, and the modules
+     *         skipped because a dependency failed
+     */
+    public static Set<Module> getFailedModules() {
+        LifecycleWatchdog guard = watchdog;
+        return guard == null ? Collections.emptySet() : guard.getFailed();
+    }
+
+    /**
+     * @return a future that completes once every module initialized by
+     *         {@link #load()} has run {@link Module#onWarmup()}. Warm-up
+     *         errors are logged and do not fail the future.
+     */
+    public static CompletableFuture<Void> getWarmupFuture() {
+        return warmup;
+    }
+
+    /**
+     * @return the solved module graph, once loading has finished
+     */
+    public static Optional<ModuleGraph> getModuleGraph() {
+        return Optional.ofNullable(moduleGraph);
+    }
+
     public static void load() {
+        load(LoadOptions.defaults());
+    }
+
+    public static void load(LoadOptions options) {
         synchronized (LOAD_LOCK) {
             if (initialized) {
                 return;
             }
             initialized = true;
+            loadOptions = options;
+            if (options.isShutdownHook()) {
+                Runtime.getRuntime().addShutdownHook(new Thread(ModuleLoader::shutdown, "wood-shutdown-hook"));
+            }
             LOGGER.info("Initializing module system...");
-            new LoadManager().doLoad();
+            LifecycleWatchdog guard = new LifecycleWatchdog(ModuleLoader::dependenciesOf, options.getModuleBudget(),
+                    options.getLoadBudget(), options.getBudgetPolicy());
+            watchdog = guard;
+            Consumer<Module> initCallback = m -> {
+                // Even a failed init may have acquired resources
+                initializedModules.add(m);
+                m.onInit();
+            };
+            Consumer<Module> preInit = guard.guard("preInit", Module::onPreInit);
+            Consumer<Module> init = guard.guard("init", initCallback);
+            PipelinedPreInit pipeline = null;
+            if (options.isPipelined()) {
+                // Pre-init overlaps discovery, so the load budget does too
+                guard.loadStarted();
+                pipeline = new PipelinedPreInit(options.getParallelism(), guard.guard("preInit", m -> {
+                    ModuleDependencyInjector.inject(m, moduleMap);
+                    m.onPreInit();
+                }));
+            }
+            LoadManager manager = new LoadManager(options.getPluginDirectory(), pipeline);
+            manager.doLoad();
+            ImmutableMap<Module, Long> early = manager.early;
+            if (pipeline != null) {
+                checkPipelinedOrder(pipeline, early.keySet());
+            }
+            List<Module> dependencyOrder = moduleGraph.getDependencyOrder();
+            long start = System.nanoTime();
             LOGGER.info("Injecting dependencies");
             dependencyOrder.forEach(m -> {
-                ModuleDependencyInjector.inject(m, moduleMap);
-            });
-            LOGGER.info("Firing pre-init");
-            dependencyOrder.forEach(m -> {
-                try {
-                    m.onPreInit();
-                } catch (Exception e) {
-                    LOGGER.error("Error in preInit for module " + m.getMetadata().getId(), e);
+                if (!early.containsKey(m)) {
+                    ModuleDependencyInjector.inject(m, moduleMap);
                 }
             });
-            LOGGER.info("Firing init");
-            dependencyOrder.forEach(m -> {
+            long injected = System.nanoTime();
+            InitProfile profile = loadProfile(options.getProfile());
+            LazyActivation activation = new LazyActivation(moduleGraph, preInit, init);
+            lazyActivation = activation;
+            Consumer<Module> loadPreInit = guardLoadCallback(guard, activation, "preInit", Module::onPreInit);
+            Consumer<Module> loadInit = guardLoadCallback(guard, activation, "init", initCallback);
+            long[] preInitNanos;
+            long[] initNanos;
+            long preInitialized;
+            try (LifecycleScheduler scheduler = new LifecycleScheduler(moduleGraph, options.getParallelism())) {
+                if (pipeline == null) {
+                    guard.loadStarted();
+                }
+                LOGGER.info("Firing pre-init");
+                preInitNanos = scheduler.run(estimator(profile, ModuleTiming::getPreInit, activation),
+                        eagerOnly(activation, m -> {
+                            if (!early.containsKey(m)) {
+                                loadPreInit.accept(m);
+                            }
+                        }));
+                preInitialized = System.nanoTime();
+                LOGGER.info("Firing init");
+                initNanos = scheduler.run(estimator(profile, ModuleTiming::getInit, activation),
+                        eagerOnly(activation, loadInit));
+            } finally {
+                guard.loadFinished();
+                activation.loadFinished();
+            }
+            early.forEach((m, nanos) -> preInitNanos[moduleGraph.ordinal(m)] = nanos);
+            long initDone = System.nanoTime();
+            ImmutableMap.Builder<String, ModuleTiming> moduleTimings = ImmutableMap.builder();
+            for (int i = 0; i < dependencyOrder.size(); i++) {
+                if (!activation.isEager(dependencyOrder.get(i))) {
+                    continue;
+                }
+                moduleTimings.put(dependencyOrder.get(i).getMetadata().getId(),
+                        ModuleTiming.of(Duration.ofNanos(preInitNanos[i]), Duration.ofNanos(initNanos[i])));
+            }
+            loadTimings = LoadTimings.of(moduleMap.size(), manager.discovery, manager.solve,
+                    Duration.ofNanos(injected - start), Duration.ofNanos(preInitialized - injected),
+                    Duration.ofNanos(initDone - preInitialized), moduleTimings.build());
+            if (options.getProfile() != null) {
                 try {
-                    m.onInit();
-                } catch (Exception e) {
-                    LOGGER.error("Error in init for module " + m.getMetadata().getId(), e);
+                    profile.merge(loadTimings.getModuleTimings()).save(options.getProfile());
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to save init profile to " + options.getProfile(), e);
                 }
-            });
+            }
+            startWarmup(dependencyOrder.stream().filter(m -> activation.isEager(m) && !guard.isFailed(m))
+                    .collect(Collectors.toList()),
+                    options.getWarmupParallelism());
         }
     }
 
+    /**
+     * A module's {@link Module#onWarmup()}. Shutdown stops it from starting,
+     * or waits for it if it already has, so it never overlaps
+     * {@link Module#onShutdown()}.
+     */
+    static final class Warmup implements Runnable {
+
+        private final Module module;
+        // Claimed by whichever comes first, the warm-up starting or stop()
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        Warmup(Module module) {
+            this.module = module;
+        }
+
+        @Override
+        public void run() {
+            if (!this.claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                this.module.onWarmup();
+            } catch (Exception e) {
+                LOGGER.error("Error in warmup for module " + this.module.getMetadata().getId(), e);
+            } finally {
+                this.finished.complete(null);
+            }
+        }
+
+        /**
+         * Skips the warm-up if it has not started yet.
+         * 
+         * @return a future that completes once the warm-up is not running
+         */
+        CompletableFuture<Void> stop() {
+            if (this.claimed.compareAndSet(false, true)) {
+                this.finished.complete(null);
+            }
+            return this.finished;
+        }
+
+    }
+
+    private static void startWarmup(List<Module> modules, int parallelism) {
+        LOGGER.info("Starting warm-up");
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("wood-warmup-%d").setDaemon(true).setPriority(Thread.MIN_PRIORITY).build());
+        CompletableFuture<?>[] finished = new CompletableFuture<?>[modules.size()];
+        for (int i = 0; i < finished.length; i++) {
+            Warmup task = new Warmup(modules.get(i));
+            warmups.put(modules.get(i), task);
+            finished[i] = task.finished;
+            executor.execute(task);
+        }
+        // Lets the queued warm-ups finish, then stops the threads
+        executor.shutdown();
+        CompletableFuture.allOf(finished).whenComplete((result, error) -> {
+            LOGGER.info("Warm-up finished");
+            warmup.complete(null);
+        });
+    }
+
+    /**
+     * The modules a module is loaded after. Pipelined pre-init runs before the
+     * graph is solved, so until then this is the discovered modules it
+     * requires or is loaded after.
+     */
+    private static List<Module> dependenciesOf(Module m) {
+        ModuleGraph graph = moduleGraph;
+        if (graph != null) {
+            return graph.getDependencies(m);
+        }
+        ModuleMetadata meta = m.getMetadata();
+        return Stream.concat(meta.getRequiredModules().stream(), meta.getLoadAfterModules().stream())
+                .map(dep -> moduleMap.get(dep.getId())).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Pipelined pre-init does not wait for load-before entries, and cannot
+     * know about modules discovered later, so it may have started a module
+     * before one it turned out to be loaded after. This only reports it.
+     */
+    private static void checkPipelinedOrder(PipelinedPreInit pipeline, Set<Module> early) {
+        ModuleGraph graph = moduleGraph;
+        if (graph == null) {
+            return;
+        }
+        for (Module module : early) {
+            for (Module dependency : graph.getDependencies(module)) {
+                if (!pipeline.finishedBefore(dependency, module)) {
+                    LOGGER.warn("Pipelined pre-init started " + module.getMetadata().getId() + " before "
+                            + dependency.getMetadata().getId() + " finished, which it is loaded after");
+                }
+            }
+        }
+    }
+
+    /**
+     * Guards a callback run by {@link #load()}. The lazy lookup check goes
+     * inside the guard, so it also covers budgeted callbacks, which run on a
+     * watchdog thread.
+     */
+    static Consumer<Module> guardLoadCallback(LifecycleWatchdog guard, LazyActivation activation, String phase,
+            Consumer<Module> callback) {
+        return guard.guard(phase, activation.loadCallback(callback));
+    }
+
+    private static Consumer<Module> eagerOnly(LazyActivation activation, Consumer<Module> callback) {
+        return m -> {
+            if (activation.isEager(m)) {
+                callback.accept(m);
+            }
+        };
+    }
+
+    /**
+     * Shuts down every initialized module, each after the modules that depend
+     * on it. Independent modules shut down in parallel, using
+     * {@link LoadOptions#getParallelism()} threads. Each module gets
+     * {@link LoadOptions#getShutdownTimeout()} to finish; a module that
+     * overruns is logged and left running on a daemon thread, and its
+     * dependencies shut down anyway. A module whose init was abandoned, or
+     * whose warm-up is running, is only shut down once that returns, within
+     * the same timeout. Warm-ups that have not started are skipped. Only the
+     * first call has any effect.
+     */
+    public static void shutdown() {
+        synchronized (SHUTDOWN_LOCK) {
+            ModuleGraph graph = moduleGraph;
+            LoadOptions options = loadOptions;
+            if (shutDown || graph == null) {
+                return;
+            }
+            shutDown = true;
+            LOGGER.info("Shutting down modules");
+            LifecycleWatchdog guard = watchdog;
+            long timeoutNanos = options.getShutdownTimeout().toNanos();
+            ExecutorService callbacks = Executors.newCachedThreadPool(
+                    new ThreadFactoryBuilder().setNameFormat("wood-shutdown-%d").setDaemon(true).build());
+            try (LifecycleScheduler scheduler = new LifecycleScheduler(graph, options.getParallelism())) {
+                scheduler.runReverse(m -> 1, m -> {
+                    if (initializedModules.contains(m)) {
+                        shutdown(m, guard.getAbandoned(m), warmups.get(m), callbacks, timeoutNanos);
+                    }
+                });
+            } finally {
+                callbacks.shutdown();
+            }
+            LOGGER.info("Modules shut down");
+        }
+    }
+
+    static void shutdown(Module m, @Nullable CompletableFuture<Void> abandonedInit, @Nullable Warmup warmup,
+            ExecutorService callbacks, long timeoutNanos) {
+        Future<?> future = callbacks.submit(() -> {
+            // Shutting down while init or warm-up still runs would race with it
+            if (abandonedInit != null) {
+                abandonedInit.get();
+            }
+            if (warmup != null) {
+                warmup.stop().get();
+            }
+            m.onShutdown();
+            return null;
+        });
+        try {
+            future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Module " + m.getMetadata().getId() + " did not shut down within "
+                    + Duration.ofNanos(timeoutNanos) + ", continuing without it");
+            future.cancel(true);
+        } catch (ExecutionException e) {
+            LOGGER.error("Error in shutdown for module " + m.getMetadata().getId(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        }
+    }
+
+    private static InitProfile loadProfile(@Nullable Path file) {
+        if (file == null) {
+            return InitProfile.empty();
+        }
+        try {
+            return InitProfile.load(file);
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring unreadable init profile " + file, e);
+            return InitProfile.empty();
+        }
+    }
+
+    /**
+     * Estimates durations from the profile. Modules without a recorded
+     * duration are given the average recorded duration, so that with no
+     * profile the longest chain of modules is started first. Lazy modules are
+     * skipped, so they take no time.
+     */
+    private static ToLongFunction<Module> estimator(InitProfile profile, Function<ModuleTiming, Duration> phase,
+            LazyActivation activation) {
+        long average = (long) profile.getTimings().values().stream().map(phase).mapToLong(Duration::toNanos)
+                .average().orElse(1);
+        return m -> activation.isEager(m)
+                ? profile.getTiming(m.getMetadata().getId()).map(phase).map(Duration::toNanos).orElse(average) : 0;
+    }
+
     /**
      * Loading logic is encapsulated in this class.
      */
@@ -93,33 +474,72 @@ public final class ModuleLoader {
         private static final Logger LOGGER = LoggerFactory.getLogger(LoadManager.class);
 
         private final ServiceLoader<Module> loader = ServiceLoader.load(Module.class);
+        private Duration discovery = Duration.ZERO;
+        private Duration solve = Duration.ZERO;
+        @Nullable
+        private final Path pluginDirectory;
+        @Nullable
+        private final PipelinedPreInit pipeline;
+        private ImmutableMap<Module, Long> early = ImmutableMap.of();
+
+        LoadManager(@Nullable Path pluginDirectory, @Nullable PipelinedPreInit pipeline) {
+            this.pluginDirectory = pluginDirectory;
+            this.pipeline = pipeline;
+        }
 
         private void doLoad() {
+            long start = System.nanoTime();
             moduleMap.clear();
+            moduleGraph = null;
             try {
                 for (Module info : this.loader) {
-                    ModuleMetadata metadata = info.getMetadata();
-                    Module old = moduleMap.put(metadata.getId(), info);
-                    // this is efficient because we expect to not have
-                    // duplicates
-                    // so we'll only do one put in most cases
-                    if (old != null) {
-                        moduleMap.put(metadata.getId(), old);
-                        if (LOGGER.isWarnEnabled()) {
-                            LOGGER.warn(String.format("%s tried to override id %s, but it is already used by %s.",
-                                    Modules.getBasicRepresentation(info), metadata.getId(),
-                                    Modules.getBasicRepresentation(old)));
-                        }
-                    }
+                    discovered(info);
                 }
             } catch (Exception | ServiceConfigurationError t) {
                 LOGGER.error("Error creating modules", t);
             }
+            // After the classpath, so plugins can't replace classpath modules
+            if (this.pluginDirectory != null) {
+                loadPlugins(this.pluginDirectory);
+            }
+            if (this.pipeline != null) {
+                this.early = this.pipeline.finish();
+            }
+            long discovered = System.nanoTime();
+            this.discovery = Duration.ofNanos(discovered - start);
             try {
-                dependencyOrder = new ModuleDependencySolver(moduleMap).computeDependencyOrder();
+                moduleGraph = new ModuleDependencySolver(moduleMap).solve();
             } catch (Exception e) {
                 LOGGER.info("Error while calculating depdency graph", e);
             }
+            this.solve = Duration.ofNanos(System.nanoTime() - discovered);
+        }
+
+        private void loadPlugins(Path directory) {
+            // Never closed: the plugin modules live as long as the process
+            PluginDirectory plugins;
+            try {
+                plugins = PluginDirectory.scan(directory, Runtime.getRuntime().availableProcessors());
+            } catch (IOException e) {
+                LOGGER.error("Error scanning plugin directory " + directory, e);
+                return;
+            }
+            plugins.getErrors().forEach((jar, error) -> LOGGER.error("Error reading plugin jar " + jar, error));
+            plugins.loadModules().forEach(this::discovered);
+        }
+
+        private void discovered(Module info) {
+            ModuleMetadata metadata = info.getMetadata();
+            // Pipelined pre-init may already be reading the map
+            Module old = moduleMap.putIfAbsent(metadata.getId(), info);
+            if (old == null) {
+                if (this.pipeline != null) {
+                    this.pipeline.discovered(info);
+                }
+            } else if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn(String.format("%s tried to override id %s, but it is already used by %s.",
+                        Modules.getBasicRepresentation(info), metadata.getId(), Modules.getBasicRepresentation(old)));
+            }
         }
 
     }
@@ -43,4 +43,11 @@ public interface ModuleMetadata {
 
     Set<ModuleDependency> getRequiredModules();
 
+    /**
+     * @return when this module is initialized
+     */
+    default Activation getActivation() {
+        return Activation.EAGER;
+    }
+
 }
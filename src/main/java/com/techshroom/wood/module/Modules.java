@@ -24,13 +24,25 @@
  */
 package com.techshroom.wood.module;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.techshroom.wood.ModuleDependency;
 import com.techshroom.wood.SemVer;
 import com.techshroom.wood.UTF8Properties;
@@ -54,12 +66,112 @@ public final class Modules {
         // Module metadata is kept as a UTF-8 properties file
         UTF8Properties properties = new UTF8Properties().load(stream);
         return ModsModMeta.of(properties.get("id"), properties.get("name"),
-                ModuleDependency.fromList(properties.get("loadAfter")).toSet(),
-                ModuleDependency.fromList(properties.get("loadBefore")).toSet(),
-                ModuleDependency.fromList(properties.get("required")).toSet(),
+                ImmutableSet.copyOf(ModuleDependency.fromList(properties.get("loadAfter"))),
+                ImmutableSet.copyOf(ModuleDependency.fromList(properties.get("loadBefore"))),
+                ImmutableSet.copyOf(ModuleDependency.fromList(properties.get("required"))),
                 SemVer.fromString(properties.get("version")));
     }
 
+    /**
+     * Loads module metadata from many descriptor URLs in parallel.
+     * 
+     * @param sources
+     *            - The descriptor URLs, each at most once
+     * @param executor
+     *            - The executor to parse descriptors on
+     * @return the loaded metadata, and the errors for every source that
+     *         failed, keyed by {@link URL#toExternalForm()}
+     * @throws IllegalArgumentException
+     *             if a source is given more than once
+     */
+    public static MetadataLoadResult getModuleMetadataFromUrls(Collection<URL> sources, Executor executor) {
+        // URL.equals resolves host names, so compare the text instead
+        return getModuleMetadata(sources, URL::toExternalForm, URL::openStream, executor);
+    }
+
+    /**
+     * Loads module metadata from many descriptor files in parallel.
+     * 
+     * @param sources
+     *            - The descriptor files, from any file system, each at most
+     *            once
+     * @param executor
+     *            - The executor to parse descriptors on
+     * @return the loaded metadata, and the errors for every source that
+     *         failed, keyed by {@link Path#toUri()}
+     * @throws IllegalArgumentException
+     *             if a source is given more than once
+     */
+    public static MetadataLoadResult getModuleMetadataFromPaths(Collection<Path> sources, Executor executor) {
+        // Unlike toString(), the URI tells apart the same path in two jars
+        return getModuleMetadata(sources, path -> path.toUri().toString(), Files::newInputStream, executor);
+    }
+
+    private interface StreamOpener<S> {
+
+        InputStream open(S source) throws IOException;
+
+    }
+
+    private static <S> MetadataLoadResult getModuleMetadata(Collection<S> sources, Function<S, String> key,
+            StreamOpener<S> opener, Executor executor) {
+        // Checked before submitting, so nothing is parsed for a bad call
+        Map<String, S> unique = new LinkedHashMap<>();
+        for (S source : sources) {
+            String sourceKey = key.apply(source);
+            checkArgument(unique.putIfAbsent(sourceKey, source) == null, "%s was given more than once", sourceKey);
+        }
+        ImmutableList.Builder<ModuleMetadata> metadata = ImmutableList.builder();
+        ImmutableMap.Builder<String, Exception> errors = ImmutableMap.builder();
+        ParallelLoad.run(unique, source -> {
+            try (InputStream stream = opener.open(source)) {
+                return getModuleMetadata(stream);
+            }
+        }, executor, metadata, errors);
+        return MetadataLoadResult.of(metadata.build(), errors.build());
+    }
+
+    /**
+     * The result of loading many descriptors at once.
+     */
+    @AutoValue
+    public static abstract class MetadataLoadResult {
+
+        static MetadataLoadResult of(ImmutableList<ModuleMetadata> metadata, ImmutableMap<String, Exception> errors) {
+            return new AutoValue_Modules_MetadataLoadResult(metadata, errors);
+        }
+
+        MetadataLoadResult() {
+        }
+
+        /**
+         * @return the metadata that loaded successfully, in source order
+         */
+        public abstract ImmutableList<ModuleMetadata> getMetadata();
+
+        /**
+         * @return the error for each source that failed to load, keyed by the
+         *         source's URL or URI
+         */
+        public abstract ImmutableMap<String, Exception> getErrors();
+
+        /**
+         * @return the metadata, if every source loaded successfully
+         * @throws IOException
+         *             if any source failed, with every error attached as a
+         *             suppressed exception
+         */
+        public final ImmutableList<ModuleMetadata> getMetadataOrThrow() throws IOException {
+            if (getErrors().isEmpty()) {
+                return getMetadata();
+            }
+            IOException error = new IOException("Failed to load module metadata from " + getErrors().keySet());
+            getErrors().values().forEach(error::addSuppressed);
+            throw error;
+        }
+
+    }
+
     /**
      * AutoValue-based implementation of ModuleMetadata.
      */
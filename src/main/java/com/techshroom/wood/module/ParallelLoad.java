@@ -0,0 +1,92 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Runs one I/O task per source on an executor, collecting the results in
+ * source order and the failures by source key.
+ */
+final class ParallelLoad {
+
+    interface Task<S, T> {
+
+        T run(S source) throws IOException;
+
+    }
+
+    /**
+     * @param sources
+     *            - The sources to load, keyed by the name used for their
+     *            errors
+     * @param task
+     *            - The task to run for each source
+     * @param executor
+     *            - The executor to run the tasks on
+     * @param results
+     *            - Receives the result of each task that completed
+     * @param errors
+     *            - Receives the exception of each task that failed. Errors
+     *            are rethrown instead.
+     */
+    static <S, T> void run(Map<String, S> sources, Task<S, T> task, Executor executor,
+            ImmutableList.Builder<T> results, ImmutableMap.Builder<String, Exception> errors) {
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        sources.forEach((key, source) -> futures.put(key, CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.run(source);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor)));
+        futures.forEach((key, future) -> {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    cause = cause.getCause();
+                }
+                Throwables.throwIfInstanceOf(cause, Error.class);
+                errors.put(key, (Exception) cause);
+            }
+        });
+    }
+
+    private ParallelLoad() {
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.techshroom.wood.ModuleDependency;
+
+/**
+ * Pre-initializes modules while discovery is still running. A discovered
+ * module is handed to the callback as soon as every module it requires or is
+ * loaded after has been discovered and has finished the callback itself.
+ * Modules that never become ready, such as lazy modules, modules with absent
+ * or mismatched dependencies and their dependents, are left for the regular
+ * pre-init phase.
+ * <p>
+ * {@link ModuleMetadata#getLoadBeforeModules() Load-before} entries are not
+ * waited for, since the module naming another may not be discovered yet, so
+ * they may be violated. {@link #finishedBefore(Module, Module)} lets the
+ * loader detect this once the graph is solved.
+ * </p>
+ */
+final class PipelinedPreInit {
+
+    private static final class Waiter {
+
+        private final Module module;
+        private final ModuleDependency dependency;
+
+        Waiter(Module module, ModuleDependency dependency) {
+            this.module = module;
+            this.dependency = dependency;
+        }
+
+    }
+
+    private final Consumer<Module> callback;
+    private final ExecutorService executor;
+    // All guarded by this
+    private final Map<String, Module> done = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, List<Waiter>> waiting = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<Module, Integer> unresolved = new HashMap<>();
+    private final Map<Module, Long> started = new HashMap<>();
+    private final Map<Module, Long> finished = new HashMap<>();
+    private final Map<Module, Long> durations = new HashMap<>();
+    private long sequence;
+    private int inFlight;
+
+    /**
+     * @param callback
+     *            - Injects and pre-initializes a module; it should handle its
+     *            own exceptions
+     */
+    PipelinedPreInit(int parallelism, Consumer<Module> callback) {
+        this.callback = callback;
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("wood-pipeline-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Called by discovery for each module it accepts.
+     */
+    synchronized void discovered(Module module) {
+        ModuleMetadata meta = module.getMetadata();
+        if (meta.getActivation() != Activation.EAGER) {
+            return;
+        }
+        int count = 0;
+        for (ModuleDependency dep : Iterables.concat(meta.getRequiredModules(), meta.getLoadAfterModules())) {
+            Module dependency = this.done.get(dep.getId());
+            if (dependency != null) {
+                if (!matches(dependency, dep)) {
+                    // Never satisfiable early; the solver will report it
+                    return;
+                }
+                continue;
+            }
+            this.waiting.computeIfAbsent(dep.getId(), k -> new ArrayList<>()).add(new Waiter(module, dep));
+            count++;
+        }
+        if (count == 0) {
+            submit(module);
+        } else {
+            this.unresolved.put(module, count);
+        }
+    }
+
+    private static boolean matches(Module module, ModuleDependency dep) {
+        return dep.getVersionMatcher().matches(module.getMetadata().getVersion());
+    }
+
+    private void submit(Module module) {
+        this.inFlight++;
+        this.started.put(module, this.sequence++);
+        this.executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                this.callback.accept(module);
+            } finally {
+                completed(module, System.nanoTime() - start);
+            }
+        });
+    }
+
+    private synchronized void completed(Module module, long nanos) {
+        this.inFlight--;
+        this.finished.put(module, this.sequence++);
+        this.durations.put(module, nanos);
+        this.done.put(module.getMetadata().getId(), module);
+        List<Waiter> waiters = this.waiting.remove(module.getMetadata().getId());
+        if (waiters != null) {
+            for (Waiter waiter : waiters) {
+                Integer count = this.unresolved.get(waiter.module);
+                if (count == null) {
+                    continue;
+                }
+                if (!matches(module, waiter.dependency)) {
+                    this.unresolved.remove(waiter.module);
+                } else if (count == 1) {
+                    this.unresolved.remove(waiter.module);
+                    submit(waiter.module);
+                } else {
+                    this.unresolved.put(waiter.module, count - 1);
+                }
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits for running callbacks to finish after discovery has ended.
+     * 
+     * @return the duration of each module's callback, for every module that
+     *         was pre-initialized early
+     */
+    synchronized ImmutableMap<Module, Long> finish() {
+        boolean interrupted = false;
+        while (this.inFlight > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        this.executor.shutdown();
+        return ImmutableMap.copyOf(this.durations);
+    }
+
+    /**
+     * @return {@code true} if {@code dependency} finished before
+     *         {@code module} started, so their order was kept; {@code false}
+     *         if either was not pre-initialized here
+     */
+    synchronized boolean finishedBefore(Module dependency, Module module) {
+        Long finishedAt = this.finished.get(dependency);
+        Long startedAt = this.started.get(module);
+        return finishedAt != null && startedAt != null && finishedAt < startedAt;
+    }
+
+}
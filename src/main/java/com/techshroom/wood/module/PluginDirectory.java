@@ -0,0 +1,260 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipError;
+import java.util.zip.ZipException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The plugin jars in a directory. Scanning opens every jar in parallel as a
+ * zip file system and reads its {@link Module} service entries and module
+ * descriptors, then creates one class loader for all the jars that could be
+ * read.
+ * <p>
+ * Descriptors are the text files read by
+ * {@link Modules#getModuleMetadata(InputStream)}, stored in the jar under
+ * {@value #DESCRIPTOR_DIRECTORY} with a {@code .properties} extension. They
+ * describe the plugins without loading any of their classes.
+ * </p>
+ * <p>
+ * Closing the directory closes its class loader. Plugin classes that are
+ * already loaded keep working, but they can no longer load anything new from
+ * their jars, so only close a directory once its modules are no longer used.
+ * </p>
+ */
+public final class PluginDirectory implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PluginDirectory.class);
+
+    public static final String SERVICE_ENTRY = "META-INF/services/" + Module.class.getName();
+    public static final String DESCRIPTOR_DIRECTORY = "META-INF/wood-modules";
+
+    /**
+     * What was read from one plugin jar.
+     */
+    @AutoValue
+    public static abstract class PluginJar {
+
+        static PluginJar of(Path path, ImmutableList<String> serviceClassNames,
+                ImmutableList<ModuleMetadata> descriptors) {
+            return new AutoValue_PluginDirectory_PluginJar(path, serviceClassNames, descriptors);
+        }
+
+        PluginJar() {
+        }
+
+        public abstract Path getPath();
+
+        /**
+         * @return the module classes listed in the jar's service entry, in
+         *         file order
+         */
+        public abstract ImmutableList<String> getServiceClassNames();
+
+        public abstract ImmutableList<ModuleMetadata> getDescriptors();
+
+    }
+
+    /**
+     * Scans the jars directly inside a directory.
+     * 
+     * @param directory
+     *            - The plugin directory
+     * @param parallelism
+     *            - The number of jars to open at once
+     * @return the scanned plugins. Jars that can't be read are left out and
+     *         reported by {@link #getErrors()}.
+     * @throws IOException
+     *             if the directory can't be listed
+     */
+    public static PluginDirectory scan(Path directory, int parallelism) throws IOException {
+        List<Path> jars = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.jar")) {
+            stream.forEach(jars::add);
+        }
+        // Directory order is arbitrary, keep discovery repeatable
+        jars.sort(null);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, jars.size())),
+                new ThreadFactoryBuilder().setNameFormat("wood-plugin-scan-%d").setDaemon(true).build());
+        try {
+            Map<String, Path> sources = new LinkedHashMap<>();
+            jars.forEach(jar -> sources.put(jar.toString(), jar));
+            ImmutableList.Builder<PluginJar> scanned = ImmutableList.builder();
+            ImmutableMap.Builder<String, Exception> errors = ImmutableMap.builder();
+            ParallelLoad.run(sources, PluginDirectory::scanJar, executor, scanned, errors);
+            return new PluginDirectory(scanned.build(), errors.build());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static PluginJar scanJar(Path jar) throws IOException {
+        FileSystem zip;
+        try {
+            zip = FileSystems.newFileSystem(jar, (ClassLoader) null);
+        } catch (ZipError e) {
+            // Java 8's zip file system reports corrupt jars as errors
+            throw new ZipException(jar + ": " + e.getMessage());
+        }
+        try {
+            ImmutableList.Builder<String> classNames = ImmutableList.builder();
+            Path services = zip.getPath(SERVICE_ENTRY);
+            if (Files.isRegularFile(services)) {
+                try (BufferedReader reader = Files.newBufferedReader(services, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        // Same format as ServiceLoader: '#' starts a comment
+                        int comment = line.indexOf('#');
+                        String name = (comment < 0 ? line : line.substring(0, comment)).trim();
+                        if (!name.isEmpty()) {
+                            classNames.add(name);
+                        }
+                    }
+                }
+            }
+            ImmutableList.Builder<ModuleMetadata> descriptors = ImmutableList.builder();
+            Path descriptorDirectory = zip.getPath(DESCRIPTOR_DIRECTORY);
+            if (Files.isDirectory(descriptorDirectory)) {
+                List<Path> files = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(descriptorDirectory, "*.properties")) {
+                    stream.forEach(files::add);
+                }
+                files.sort(null);
+                for (Path file : files) {
+                    try (InputStream descriptor = Files.newInputStream(file)) {
+                        descriptors.add(Modules.getModuleMetadata(descriptor));
+                    }
+                }
+            }
+            return PluginJar.of(jar, classNames.build(), descriptors.build());
+        } finally {
+            zip.close();
+        }
+    }
+
+    private final ImmutableList<PluginJar> jars;
+    private final ImmutableMap<String, Exception> errors;
+    private final URLClassLoader classLoader;
+
+    private PluginDirectory(ImmutableList<PluginJar> jars, ImmutableMap<String, Exception> errors) {
+        this.jars = jars;
+        this.errors = errors;
+        URL[] urls = new URL[jars.size()];
+        for (int i = 0; i < urls.length; i++) {
+            try {
+                urls[i] = jars.get(i).getPath().toUri().toURL();
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        this.classLoader = new URLClassLoader(urls, PluginDirectory.class.getClassLoader());
+    }
+
+    /**
+     * @return the jars that were read, in file name order
+     */
+    public ImmutableList<PluginJar> getJars() {
+        return this.jars;
+    }
+
+    /**
+     * @return the error for each jar that couldn't be read, keyed by the jar
+     */
+    public ImmutableMap<String, Exception> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * @return the class loader shared by every plugin, whose parent is the
+     *         loader of this library. It is closed by {@link #close()}.
+     */
+    public ClassLoader getClassLoader() {
+        return this.classLoader;
+    }
+
+    /**
+     * @return the descriptors of every jar, in jar order
+     */
+    public ImmutableList<ModuleMetadata> getDescriptors() {
+        ImmutableList.Builder<ModuleMetadata> descriptors = ImmutableList.builder();
+        this.jars.forEach(jar -> descriptors.addAll(jar.getDescriptors()));
+        return descriptors.build();
+    }
+
+    /**
+     * Creates every module listed in the jars' service entries, in jar order.
+     * Modules that fail to load are logged and left out.
+     */
+    public ImmutableList<Module> loadModules() {
+        ImmutableList.Builder<Module> modules = ImmutableList.builder();
+        for (PluginJar jar : this.jars) {
+            for (String className : jar.getServiceClassNames()) {
+                try {
+                    modules.add(Class.forName(className, true, this.classLoader).asSubclass(Module.class)
+                            .getConstructor().newInstance());
+                } catch (Exception | LinkageError e) {
+                    LOGGER.error("Error creating module " + className + " from " + jar.getPath(), e);
+                }
+            }
+        }
+        return modules.build();
+    }
+
+    /**
+     * Closes the class loader shared by the plugins.
+     */
+    @Override
+    public void close() throws IOException {
+        this.classLoader.close();
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+
+public class ModuleDependencyTest {
+
+    private static SemVer v(String version) {
+        return SemVer.fromString(version);
+    }
+
+    @Test
+    public void parseAnyVersion() throws Exception {
+        Range<SemVer> any = Range.downTo(v("0.0.0"), BoundType.CLOSED);
+        assertEquals(ModuleDependency.fromFields("core", any), ModuleDependency.fromString("core"));
+        assertEquals(ModuleDependency.fromFields("core", any), ModuleDependency.fromString("core:*"));
+    }
+
+    @Test
+    public void parseRanges() throws Exception {
+        assertEquals(Range.closedOpen(v("1.0.0"), v("2.0.0")),
+                ModuleDependency.fromString("core:[1.0.0,2.0.0)").getVersionRange());
+        assertEquals(Range.openClosed(v("1.10.0"), v("1.20.3")),
+                ModuleDependency.fromString("core:(1.10.0,1.20.3]").getVersionRange());
+        assertEquals(Range.atLeast(v("1.0.0-rc.1")),
+                ModuleDependency.fromString("core:[1.0.0-rc.1,)").getVersionRange());
+        assertEquals(Range.lessThan(v("3.0.0")), ModuleDependency.fromString("core:(,3.0.0)").getVersionRange());
+    }
+
+    @Test
+    public void parseList() throws Exception {
+        assertEquals(ImmutableList.of(ModuleDependency.fromString("a"), ModuleDependency.fromString("b:[1.0.0,)")),
+                ModuleDependency.fromList("a;;b:[1.0.0,)"));
+        assertEquals(ImmutableList.of(), ModuleDependency.fromList(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectMissingBrackets() throws Exception {
+        ModuleDependency.fromString("core:1.0.0,2.0.0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNoVersions() throws Exception {
+        ModuleDependency.fromString("core:(,)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectClosedMissingBound() throws Exception {
+        ModuleDependency.fromString("core:[,1.0.0]");
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ParseCacheTest {
+
+    @Test
+    public void internIdenticalSpecs() throws Exception {
+        assertSame(ModuleDependency.fromString("core:[1.0.0,2.0.0)"),
+                ModuleDependency.fromString(new String("core:[1.0.0,2.0.0)")));
+        assertSame(SemVer.fromString("1.2.3-rc.1"), SemVer.fromString(new String("1.2.3-rc.1")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseErrorsAreNotWrapped() throws Exception {
+        SemVer.fromString("not a version");
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SemVerTest {
+
+    private static void assertOrdered(String... versions) {
+        for (int i = 1; i < versions.length; i++) {
+            SemVer lower = SemVer.fromString(versions[i - 1]);
+            SemVer higher = SemVer.fromString(versions[i]);
+            assertTrue(lower + " should be before " + higher, lower.compareTo(higher) < 0);
+            assertTrue(higher + " should be after " + lower, higher.compareTo(lower) > 0);
+        }
+    }
+
+    @Test
+    public void orderCoreFields() throws Exception {
+        assertOrdered("0.0.0", "0.0.1", "0.1.0", "0.1.1", "1.0.0", "1.2.3", "2.0.0");
+    }
+
+    @Test
+    public void orderPreRelease() throws Exception {
+        // Example from the semver specification
+        assertOrdered("1.0.0-alpha", "1.0.0-alpha.1", "1.0.0-alpha.beta", "1.0.0-beta", "1.0.0-beta.2",
+                "1.0.0-beta.11", "1.0.0-rc.1", "1.0.0");
+    }
+
+    @Test
+    public void ignoreBuildMetadataWhenOrdering() throws Exception {
+        assertEquals(0, SemVer.fromString("1.0.0+abc").compareTo(SemVer.fromString("1.0.0+def")));
+    }
+
+    @Test
+    public void packedKeyRoundTrip() throws Exception {
+        SemVer version = SemVer.fromString("12.345.6789-rc.1");
+        assertEquals(version, SemVer.fromPackedKey(version.getPackedKey(), "rc.1", null));
+    }
+
+    @Test
+    public void parseMultiDigitFields() throws Exception {
+        assertEquals(SemVer.fromFields(1, 10, 200, null, null), SemVer.fromString("1.10.200"));
+    }
+
+    @Test
+    public void parsePreReleaseAndBuildMetadata() throws Exception {
+        assertEquals(SemVer.fromFields(1, 0, 0, "rc.1", "build.5"), SemVer.fromString("1.0.0-rc.1+build.5"));
+        assertEquals(SemVer.fromFields(1, 0, 0, null, "build-5"), SemVer.fromString("1.0.0+build-5"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectMissingParts() throws Exception {
+        SemVer.fromString("1.0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNonNumericParts() throws Exception {
+        SemVer.fromString("1.x.0");
+    }
+
+    @Test
+    public void orderFieldsTooLargeToPack() throws Exception {
+        SemVer date = SemVer.fromString("20240101.0.0");
+        assertEquals(20240101, date.getMajor());
+        assertEquals(SemVer.NO_PACKED_KEY, date.getPackedKey());
+        assertOrdered("1.0.0", "20240101.0.0-rc.1", "20240101.0.0", "20240101.0.1", "20240102.0.0");
+        assertTrue(ModuleDependency.fromString("core:[20240101.0.0,)").getVersionMatcher().matches(date));
+        assertTrue(ModuleDependency.fromString("core:[1.0.0,)").getVersionMatcher().matches(date));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectFieldOverflow() throws Exception {
+        SemVer.fromString("2147483648.0.0");
+    }
+
+}
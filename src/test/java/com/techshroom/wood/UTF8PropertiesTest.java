@@ -0,0 +1,353 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class UTF8PropertiesTest {
+
+    private static final String SAMPLE = "// comment\n" + "/* block\n comment */first=1\n"
+            + "/** Doc for key. */key=value\n" + "unicode=héllo ☃ 😀\n" + "last=no newline";
+
+    private static UTF8Properties load(String text) throws IOException {
+        return new UTF8Properties().load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void loadFromStream() throws Exception {
+        assertEquals(ImmutableMap.of("first", "1", "key", "value", "unicode", "héllo ☃ 😀", "last", "no newline"),
+                load(SAMPLE));
+    }
+
+    @Test
+    public void loadFromReader() throws Exception {
+        assertEquals(load(SAMPLE), new UTF8Properties().load(new StringReader(SAMPLE)));
+    }
+
+    @Test
+    public void keepJavadoc() throws Exception {
+        UTF8Properties properties = load(SAMPLE);
+        assertNull(properties.getJavadoc("first"));
+        assertEquals(" Doc for key. ", properties.getJavadoc("key"));
+    }
+
+    @Test
+    public void mapFile() throws Exception {
+        Path file = Files.createTempFile("mapped", ".properties");
+        try {
+            Files.write(file, SAMPLE.getBytes(StandardCharsets.UTF_8));
+            MappedUTF8Properties mapped = MappedUTF8Properties.map(file);
+            UTF8Properties loaded = load(SAMPLE);
+            assertEquals(loaded, mapped);
+            for (String key : loaded.keySet()) {
+                assertEquals(loaded.getJavadoc(key), mapped.getJavadoc(key));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void mapFileReportsErrorLine() throws Exception {
+        Path file = Files.createTempFile("mapped", ".properties");
+        try {
+            Files.write(file, "a=1\nb=2\n// comment\n-bad=3\n".getBytes(StandardCharsets.UTF_8));
+            MappedUTF8Properties.map(file);
+            fail("expected an error");
+        } catch (IOException e) {
+            assertEquals("On line 3: - is an invalid key starting character", e.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void mapFileRejectsMalformedValue() throws Exception {
+        Path file = Files.createTempFile("mapped", ".properties");
+        try {
+            // An overlong encoding of '/', which a reporting decoder rejects
+            Files.write(file, new byte[] { 'a', '=', 'x', (byte) 0xC0, (byte) 0xAF, '\n' });
+            MappedUTF8Properties.map(file);
+            fail("expected an error");
+        } catch (IOException e) {
+            assertEquals("On line 0: malformed UTF-8 input", e.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void closedMappingKeepsReadValues() throws Exception {
+        Path file = Files.createTempFile("mapped", ".properties");
+        try {
+            Files.write(file, "a=1\nb=2\na=3\n".getBytes(StandardCharsets.UTF_8));
+            MappedUTF8Properties mapped = MappedUTF8Properties.map(file);
+            assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(mapped.keySet()));
+            assertEquals("3", mapped.get("a"));
+            mapped.close();
+            assertEquals("3", mapped.get("a"));
+            try {
+                mapped.get("b");
+                fail("expected an error");
+            } catch (IllegalStateException expected) {
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void visitEntries() throws Exception {
+        List<String> visited = new ArrayList<>();
+        UTF8Properties.parse(new StringReader(SAMPLE), (key, value, javadoc, line) -> {
+            visited.add(key + "=" + value + "@" + line + "/" + javadoc);
+            return true;
+        });
+        assertEquals(ImmutableList.of("first=1@2/null", "key=value@3/ Doc for key. ", "unicode=héllo ☃ 😀@4/null",
+                "last=no newline@5/null"), visited);
+    }
+
+    @Test
+    public void stopVisitingEarly() throws Exception {
+        List<String> visited = new ArrayList<>();
+        // Would fail to parse if it kept going
+        UTF8Properties.parse(new StringReader("a=1\nb=2\n-bad=3"), (key, value, javadoc, line) -> {
+            visited.add(key);
+            return !key.equals("b");
+        });
+        assertEquals(ImmutableList.of("a", "b"), visited);
+    }
+
+    @Test
+    public void layerByPrecedence() throws Exception {
+        UTF8Properties defaults = load("/** The port. */port=80\nhost=localhost\n");
+        UTF8Properties overrides = load("port=8080\nextra=1\n");
+        LayeredProperties layered = LayeredProperties.of(ImmutableList.of(defaults, overrides));
+        assertEquals(ImmutableMap.of("port", "8080", "host", "localhost", "extra", "1"), layered);
+        // The value comes from the overrides, which have no javadoc for it
+        assertNull(layered.getJavadoc("port"));
+        overrides.remove("port");
+        assertEquals("80", layered.get("port"));
+        assertEquals(" The port. ", layered.getJavadoc("port"));
+    }
+
+    @Test
+    public void layerHidesKeysRemovedFromEveryLayer() throws Exception {
+        UTF8Properties defaults = load("port=80\nhost=localhost\n");
+        UTF8Properties overrides = load("port=8080\n");
+        LayeredProperties layered = LayeredProperties.of(ImmutableList.of(defaults, overrides));
+        defaults.remove("port");
+        assertTrue(layered.containsKey("port"));
+        overrides.remove("port");
+        assertFalse(layered.containsKey("port"));
+        assertEquals(1, layered.size());
+        assertEquals(ImmutableSet.of("host"), layered.keySet());
+        assertEquals(ImmutableMap.of("host", "localhost"), layered);
+    }
+
+    @Test
+    public void loadLayersFromFiles() throws Exception {
+        Path defaults = Files.createTempFile("defaults", ".properties");
+        Path overrides = Files.createTempFile("overrides", ".properties");
+        Path missing = defaults.resolveSibling(defaults.getFileName() + ".missing");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Files.write(defaults, "port=80\nhost=localhost\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(overrides, "port=8080\n".getBytes(StandardCharsets.UTF_8));
+            LayeredProperties layered = LayeredProperties.load(ImmutableList.of(defaults, overrides), executor);
+            assertEquals(ImmutableMap.of("port", "8080", "host", "localhost"), layered);
+            try {
+                LayeredProperties.load(ImmutableList.of(defaults, missing), executor);
+                fail("expected an error");
+            } catch (IOException e) {
+                assertEquals(1, e.getSuppressed().length);
+            }
+        } finally {
+            executor.shutdown();
+            Files.delete(defaults);
+            Files.delete(overrides);
+        }
+    }
+
+    @Test
+    public void reloadAppliesDifferences() throws Exception {
+        Path file = Files.createTempFile("reloading", ".properties");
+        try {
+            Files.write(file, "a=1\nb=2\nc=3\n".getBytes(StandardCharsets.UTF_8));
+            try (ReloadingProperties reloading = ReloadingProperties.load(file)) {
+                UTF8Properties live = reloading.getProperties();
+                List<Set<String>> notified = new ArrayList<>();
+                reloading.addListener(notified::add);
+                Files.write(file, "a=1\nc=4\nd=5\n/** Now documented. */b=2\n".getBytes(StandardCharsets.UTF_8));
+                assertEquals(ImmutableSet.of("b", "c", "d"), reloading.reload());
+                assertEquals(ImmutableMap.of("a", "1", "b", "2", "c", "4", "d", "5"), live);
+                Files.write(file, "a=1\nc=4\nd=5\n".getBytes(StandardCharsets.UTF_8));
+                assertEquals(ImmutableSet.of("b"), reloading.reload());
+                assertEquals(ImmutableSet.of(), reloading.reload());
+                assertSame(live, reloading.getProperties());
+                assertEquals(ImmutableList.of(ImmutableSet.of("b", "c", "d"), ImmutableSet.of("b")), notified);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void watcherReloadsSettledFile() throws Exception {
+        Path dir = Files.createTempDirectory("reloading");
+        Path file = dir.resolve("watched.properties");
+        try {
+            Files.write(file, "a=1\nb=2\n".getBytes(StandardCharsets.UTF_8));
+            try (ReloadingProperties reloading = ReloadingProperties.watch(file, Duration.ofMillis(300))) {
+                BlockingQueue<Set<String>> notified = new LinkedBlockingQueue<>();
+                reloading.addListener(notified::add);
+                // A half-written file must not be reported as removing b
+                Files.write(file, "a=1\n".getBytes(StandardCharsets.UTF_8));
+                Files.write(file, "a=1\nb=3\n".getBytes(StandardCharsets.UTF_8));
+                assertEquals(ImmutableSet.of("b"), notified.poll(10, TimeUnit.SECONDS));
+                assertEquals(ImmutableMap.of("a", "1", "b", "3"), reloading.getProperties());
+                assertNull(notified.poll(1, TimeUnit.SECONDS));
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void typedAccessors() throws Exception {
+        UTF8Properties properties = load("port=8080\nenabled=TRUE\ntimeout=90s\nhosts=a, b,,c\nversion=1.2.3\n");
+        TypedProperties typed = TypedProperties.of(properties);
+        assertEquals(8080, typed.getInt("port", 0));
+        assertEquals(true, typed.getBoolean("enabled", false));
+        assertEquals(Duration.ofSeconds(90), typed.getDuration("timeout", Duration.ZERO));
+        assertEquals(ImmutableList.of("a", "b", "c"), typed.getList("hosts"));
+        assertEquals(SemVer.fromString("1.2.3"), typed.getSemVer("version"));
+        assertEquals(7, typed.getInt("missing", 7));
+        properties.put("port", "9090");
+        assertEquals(9090, typed.getInt("port", 0));
+    }
+
+    @Test
+    public void typedAccessorReportsLine() throws Exception {
+        TypedProperties typed = TypedProperties.load(new StringReader("a=1\nport=eighty\n"));
+        try {
+            typed.getInt("port", 0);
+            fail("expected an error");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("On line 1: invalid value 'eighty' for port"));
+        }
+    }
+
+    @Test
+    public void typedAccessorCachesEachParser() throws Exception {
+        TypedProperties typed = TypedProperties.of(load("port=8080\n"));
+        AtomicInteger parses = new AtomicInteger();
+        Function<String, Integer> countingInt = raw -> {
+            parses.incrementAndGet();
+            return Integer.valueOf(raw);
+        };
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Integer.valueOf(8080), typed.get("port", countingInt));
+            assertEquals(Long.valueOf(8080), typed.get("port", TypedProperties.LONG));
+        }
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    public void lineNumbersFollowEntries() throws Exception {
+        assertEquals(OptionalInt.empty(), load("a=1\n").getLineNumber("a"));
+        UTF8Properties properties = new UTF8Properties().trackLineNumbers()
+                .load(new StringReader("a=1\n/** Doc. */b=2\n"));
+        assertEquals(OptionalInt.of(0), properties.getLineNumber("a"));
+        assertEquals(OptionalInt.of(1), properties.getLineNumber("b"));
+        properties.put("a", "changed");
+        assertEquals(OptionalInt.empty(), properties.getLineNumber("a"));
+        properties.remove("b");
+        properties.put("b", "2");
+        assertEquals(OptionalInt.empty(), properties.getLineNumber("b"));
+        assertNull(properties.getJavadoc("b"));
+    }
+
+    @Test
+    public void loadAcrossBufferBoundaries() throws Exception {
+        // Multi-byte characters will straddle every decoding chunk
+        String value = Strings.repeat("é😀x", 20000);
+        assertEquals(ImmutableMap.of("a", value, "b", "after"), load("a=" + value + "\nb=after\n"));
+    }
+
+    @Test
+    public void reportErrorLine() throws Exception {
+        try {
+            load("a=1\nb=2\n// comment\n-bad=3\n");
+            fail("expected an error");
+        } catch (IllegalStateException e) {
+            assertEquals("On line 3: - is an invalid key starting character", e.getMessage());
+        }
+    }
+
+    @Test
+    public void reportMalformedInputLine() throws Exception {
+        byte[] bytes = "a=1\nb=2\nc=ÿ\n".getBytes(StandardCharsets.ISO_8859_1);
+        try {
+            new UTF8Properties().load(new ByteArrayInputStream(bytes));
+            fail("expected an error");
+        } catch (IOException e) {
+            assertEquals("On line 2: malformed UTF-8 input", e.getMessage());
+        }
+    }
+
+}
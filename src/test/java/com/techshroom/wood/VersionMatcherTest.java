@@ -0,0 +1,68 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+
+public class VersionMatcherTest {
+
+    private static final List<SemVer> VERSIONS =
+            Lists.transform(ImmutableList.of("0.0.0-alpha", "0.0.0", "0.9.9", "1.0.0-alpha", "1.0.0-rc.1", "1.0.0",
+                    "1.0.0+build", "1.0.1", "1.10.0", "2.0.0-beta", "2.0.0", "10.0.0"), SemVer::fromString);
+
+    private static final List<String> RANGES = ImmutableList.of("*", "[0.0.0,)", "[1.0.0,2.0.0)", "(1.0.0,2.0.0]",
+            "[1.0.0,1.0.0]", "[1.0.0-rc.1,1.0.0-rc.1]", "(,1.0.0)", "(,1.0.0]", "(1.0.0,)", "[1.0.0-alpha,)",
+            "(1.0.0-alpha,2.0.0-beta)");
+
+    @Test
+    public void matchesSameAsRange() throws Exception {
+        for (String spec : RANGES) {
+            ModuleDependency dependency = ModuleDependency.fromString("id:" + spec);
+            Range<SemVer> range = dependency.getVersionRange();
+            VersionMatcher matcher = dependency.getVersionMatcher();
+            for (SemVer version : VERSIONS) {
+                assertEquals(spec + " contains " + version, range.contains(version), matcher.matches(version));
+            }
+        }
+    }
+
+    @Test
+    public void matchesAllForUnboundedRange() throws Exception {
+        VersionMatcher matcher = VersionMatcher.compile(Range.all());
+        for (SemVer version : VERSIONS) {
+            assertTrue(matcher.matches(version));
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+public class BinaryModuleDescriptorsTest extends TestBase {
+
+    private static ModuleMetadata parse(String descriptor) throws Exception {
+        return Modules.getModuleMetadata(new ByteArrayInputStream(descriptor.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        List<ModuleMetadata> modules = ImmutableList.of(
+                parse("id=core\nname=Core ☃\nversion=1.10.0-rc.1+build.2\nloadAfter=\nloadBefore=\nrequired=\n"),
+                parse("id=extra\nname=Extra\nversion=2.0.0\nloadAfter=opt:(,3.0.0]\nloadBefore=late:*\n"
+                        + "required=core:[1.0.0,2.0.0);other:(1.0.0-alpha,)\n"),
+                parse("id=dated\nname=Dated\nversion=20240101.0.0\nloadAfter=\nloadBefore=\n"
+                        + "required=core:[20230101.0.0,)\n"));
+        ByteBuffer buffer = BinaryModuleDescriptors.write(modules);
+        assertEquals(modules, BinaryModuleDescriptors.read(buffer));
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectOtherData() throws Exception {
+        BinaryModuleDescriptors.read(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5 }));
+    }
+
+    @Test
+    public void rejectTruncatedData() throws Exception {
+        ByteBuffer buffer = BinaryModuleDescriptors.write(ImmutableList.of(parse(
+                "id=extra\nname=Extra\nversion=2.0.0\nloadAfter=\nloadBefore=\nrequired=core:[1.0.0,2.0.0)\n")));
+        for (int length = 0; length < buffer.limit(); length++) {
+            ByteBuffer truncated = buffer.duplicate();
+            truncated.limit(length);
+            try {
+                BinaryModuleDescriptors.read(truncated);
+                fail("read " + length + " of " + buffer.limit() + " bytes");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void internReadValues() throws Exception {
+        ModuleMetadata module = parse(
+                "id=extra\nname=Extra\nversion=2.0.0\nloadAfter=\nloadBefore=\nrequired=core:[1.0.0,2.0.0)\n");
+        ModuleMetadata read = BinaryModuleDescriptors.read(BinaryModuleDescriptors.write(ImmutableList.of(module)))
+                .get(0);
+        assertSame(module.getVersion(), read.getVersion());
+        assertSame(Iterables.getOnlyElement(module.getRequiredModules()),
+                Iterables.getOnlyElement(read.getRequiredModules()));
+    }
+
+}
@@ -105,4 +105,40 @@ public class DepdencySolverTest extends TestBase {
         assertAfter(solve, dep4, depB);
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void requiredIdMustMatch() throws Exception {
+        // Any version of "a" would fit the range, but "a" is not "missing"
+        Module moduleA = new ModuleBuilder("a", "A", "1.0.0").build();
+        Module moduleB = new ModuleBuilder("b", "B", "1.0.0").setRequired(require("missing:[1.0.0,)")).build();
+        solve(moduleA, moduleB);
+    }
+
+    @Test
+    public void loadAfterIdMustMatch() throws Exception {
+        // Matching by version alone would link "b" to itself
+        Module moduleA = new ModuleBuilder("a", "A", "2.0.0").build();
+        Module moduleB = new ModuleBuilder("b", "B", "1.0.0").setLoadAfter(require("missing:[1.0.0,)")).build();
+        assertTrue(solve(moduleA, moduleB).containsAll(ImmutableList.of(moduleA, moduleB)));
+    }
+
+    @Test
+    public void loadAfterOtherVersionIsIgnored() throws Exception {
+        Module moduleA = new ModuleBuilder("a", "A", "2.0.0").build();
+        Module moduleC = new ModuleBuilder("c", "C", "1.0.0").build();
+        Module moduleB = new ModuleBuilder("b", "B", "1.0.0").setRequired(require(moduleC))
+                .setLoadAfter(require("a:[1.0.0,2.0.0)")).build();
+        List<Module> res = solve(moduleA, moduleB, moduleC);
+        assertEquals(3, res.size());
+        assertAfter(res, moduleC, moduleB);
+    }
+
+    @Test
+    public void loadBeforeDelaysTarget() throws Exception {
+        Module moduleA = new ModuleBuilder("a", "A", "1.0.0").build();
+        Module moduleB = new ModuleBuilder("b", "B", "1.0.0").setRequired(require(moduleA)).build();
+        Module moduleC = new ModuleBuilder("c", "C", "1.0.0").setLoadBefore(require(moduleB))
+                .setRequired(require(moduleA)).build();
+        assertEquals(ImmutableList.of(moduleA, moduleC, moduleB), solve(moduleB, moduleC, moduleA));
+    }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.techshroom.wood.module.SyntheticModuleGraphs.Shape;
+
+public class DependencyIndexTest extends TestBase {
+
+    private static Set<Module> walk(Module start, Function<Module, ImmutableList<Module>> edges) {
+        Set<Module> seen = new HashSet<>();
+        Deque<Module> queue = new ArrayDeque<>(edges.apply(start));
+        while (!queue.isEmpty()) {
+            Module next = queue.poll();
+            if (seen.add(next)) {
+                queue.addAll(edges.apply(next));
+            }
+        }
+        return seen;
+    }
+
+    @Test
+    public void matchesGraphWalk() throws Exception {
+        ModuleGraph graph = ModuleGraph.solve(SyntheticModuleGraphs.generate(Shape.RANDOM_DAG, 300, 7));
+        DependencyIndex index = graph.getDependencyIndex();
+        for (Module module : graph.getDependencyOrder()) {
+            String id = module.getMetadata().getId();
+            Set<Module> dependencies = walk(module, graph::getDependencies);
+            assertEquals(dependencies, new HashSet<>(index.transitiveDependencies(id)));
+            assertEquals(walk(module, graph::getDependents), new HashSet<>(index.dependentsOf(id)));
+            for (Module other : graph.getDependencyOrder()) {
+                assertEquals(dependencies.contains(other), index.dependsOn(id, other.getMetadata().getId()));
+            }
+        }
+    }
+
+    @Test
+    public void answersInDependencyOrder() throws Exception {
+        Module a = new ModuleBuilder("a", "A", "1.0.0").build();
+        Module b = new ModuleBuilder("b", "B", "1.0.0").setRequired(require(a)).build();
+        Module c = new ModuleBuilder("c", "C", "1.0.0").setRequired(require(b)).build();
+        DependencyIndex index = ModuleGraph.solve(ImmutableList.of(c, a, b)).getDependencyIndex();
+        assertEquals(ImmutableList.of(a, b), index.transitiveDependencies("C"));
+        assertEquals(ImmutableList.of(b, c), index.dependentsOf("a"));
+        assertTrue(index.dependsOn("c", "a"));
+        assertFalse(index.dependsOn("a", "c"));
+        assertFalse(index.dependsOn("a", "a"));
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.techshroom.wood.ModuleDependency;
+import com.techshroom.wood.module.SyntheticModuleGraphs.Shape;
+
+/**
+ * Solver tests over large synthetic graphs. The scaling checks are slow and
+ * only run with {@code -Dwood.scaling=true}. They compare solve time and the
+ * bytes allocated while solving, garbage included. Retained heap is not
+ * measured.
+ */
+public class DependencySolverScalingTest extends TestBase {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DependencySolverScalingTest.class);
+
+    private static final long SEED = 0x5EED;
+    private static final int[] SIZES = { 1_000, 10_000, 100_000 };
+    /*
+     * Allocation is nearly deterministic, so each 10x step in size may grow it
+     * at most 15x; linear growth is 10x and quadratic growth is 100x.
+     */
+    private static final double MAX_ALLOCATION_GROWTH = 15;
+    /*
+     * Time is too noisy to compare step by step, since the smallest graphs
+     * solve in a couple of milliseconds. Instead the exponent of time against
+     * size is fitted over all sizes: 1 is linear and 2 is quadratic, and the
+     * limit leaves room for GC and cache misses on the largest graphs.
+     */
+    private static final double MAX_TIME_EXPONENT = 1.7;
+    private static final int WARMUP_RUNS = 3;
+
+    private static final EnumSet<Shape> ACYCLIC = EnumSet.complementOf(EnumSet.of(Shape.CYCLIC));
+
+    private static ImmutableList<Module> solve(List<Module> modules) {
+        Map<String, Module> map =
+                modules.stream().collect(Collectors.toMap(m -> m.getMetadata().getId(), Function.identity()));
+        return new ModuleDependencySolver(map).computeDependencyOrder();
+    }
+
+    private static void assertValidOrder(List<Module> modules, List<Module> order) {
+        assertEquals(modules.size(), order.size());
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            index.put(order.get(i).getMetadata().getId(), i);
+        }
+        Map<String, ModuleMetadata> byId = new HashMap<>();
+        modules.forEach(m -> byId.put(m.getMetadata().getId(), m.getMetadata()));
+        assertEquals(byId.keySet(), index.keySet());
+        for (ModuleMetadata meta : byId.values()) {
+            int position = index.get(meta.getId());
+            for (ModuleDependency dep : meta.getRequiredModules()) {
+                assertTrue(meta.getId() + " loaded before required " + dep, index.get(dep.getId()) < position);
+            }
+            for (ModuleDependency dep : meta.getLoadAfterModules()) {
+                if (present(byId, dep)) {
+                    assertTrue(meta.getId() + " loaded before " + dep, index.get(dep.getId()) < position);
+                }
+            }
+            for (ModuleDependency dep : meta.getLoadBeforeModules()) {
+                if (present(byId, dep)) {
+                    assertTrue(meta.getId() + " loaded after " + dep, index.get(dep.getId()) > position);
+                }
+            }
+        }
+    }
+
+    private static boolean present(Map<String, ModuleMetadata> byId, ModuleDependency dep) {
+        ModuleMetadata meta = byId.get(dep.getId());
+        return meta != null && dep.getVersionMatcher().matches(meta.getVersion());
+    }
+
+    @Test
+    public void solvesAcyclicShapes() throws Exception {
+        for (Shape shape : ACYCLIC) {
+            ImmutableList<Module> modules = SyntheticModuleGraphs.generate(shape, SIZES[0], SEED);
+            assertValidOrder(modules, solve(modules));
+        }
+    }
+
+    @Test
+    public void rejectsCycles() throws Exception {
+        ImmutableList<Module> modules = SyntheticModuleGraphs.generate(Shape.CYCLIC, SIZES[0], SEED);
+        try {
+            solve(modules);
+            fail("solved a cyclic graph");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Unsatisfied dependencies"));
+        }
+    }
+
+    @Test
+    public void generatorIsDeterministic() throws Exception {
+        List<String> first = ids(SyntheticModuleGraphs.generate(Shape.RANGE_HEAVY, 100, SEED));
+        List<String> second = ids(SyntheticModuleGraphs.generate(Shape.RANGE_HEAVY, 100, SEED));
+        assertEquals(first, second);
+    }
+
+    private static List<String> ids(List<Module> modules) {
+        return modules.stream().map(m -> m.getMetadata().getId() + m.getMetadata().getRequiredModules())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void scaling() throws Exception {
+        Assume.assumeTrue("scaling suite disabled, use -Dwood.scaling=true", Boolean.getBoolean("wood.scaling"));
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        // Compile the solver before anything is timed, so the first shape
+        // measured isn't penalized
+        for (Shape shape : Shape.values()) {
+            ImmutableList<Module> modules = SyntheticModuleGraphs.generate(shape, SIZES[1], SEED);
+            for (int run = 0; run < WARMUP_RUNS; run++) {
+                solveAllowingCycles(shape, modules);
+            }
+        }
+        for (Shape shape : Shape.values()) {
+            long[] nanos = new long[SIZES.length];
+            long[] allocated = new long[SIZES.length];
+            for (int i = 0; i < SIZES.length; i++) {
+                ImmutableList<Module> modules = SyntheticModuleGraphs.generate(shape, SIZES[i], SEED);
+                nanos[i] = Long.MAX_VALUE;
+                allocated[i] = Long.MAX_VALUE;
+                // Best of several runs
+                for (int run = 0; run < 5; run++) {
+                    System.gc();
+                    long startAllocated = threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+                    long start = System.nanoTime();
+                    ImmutableList<Module> order = solveAllowingCycles(shape, modules);
+                    nanos[i] = Math.min(nanos[i], System.nanoTime() - start);
+                    if (threads != null) {
+                        allocated[i] =
+                                Math.min(allocated[i], threads.getCurrentThreadAllocatedBytes() - startAllocated);
+                    }
+                    if (run == 0 && shape != Shape.CYCLIC) {
+                        assertValidOrder(modules, order);
+                    }
+                }
+                LOGGER.info(String.format("%s %d: %.2f ms, %d KiB allocated", shape, SIZES[i], nanos[i] / 1e6,
+                        allocated[i] / 1024));
+            }
+            double exponent = fitExponent(nanos);
+            LOGGER.info(String.format("%s: time grows as size^%.2f", shape, exponent));
+            assertTrue(String.format("%s time grows as size^%.2f, limit is %.2f", shape, exponent, MAX_TIME_EXPONENT),
+                    exponent <= MAX_TIME_EXPONENT);
+            if (threads != null) {
+                for (int i = 1; i < SIZES.length; i++) {
+                    String step = shape + " " + SIZES[i - 1] + " -> " + SIZES[i];
+                    assertGrowth(step + " allocation", MAX_ALLOCATION_GROWTH, allocated[i - 1], allocated[i]);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static ImmutableList<Module> solveAllowingCycles(Shape shape, List<Module> modules) {
+        try {
+            return solve(modules);
+        } catch (IllegalStateException e) {
+            if (shape != Shape.CYCLIC) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Least-squares slope of log(time) against log(size).
+     */
+    private static double fitExponent(long[] nanos) {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < SIZES.length; i++) {
+            meanX += Math.log(SIZES[i]) / SIZES.length;
+            meanY += Math.log(Math.max(1, nanos[i])) / SIZES.length;
+        }
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < SIZES.length; i++) {
+            double dx = Math.log(SIZES[i]) - meanX;
+            covariance += dx * (Math.log(Math.max(1, nanos[i])) - meanY);
+            variance += dx * dx;
+        }
+        return covariance / variance;
+    }
+
+    private static void assertGrowth(String what, double limit, long smaller, long larger) {
+        double growth = (double) larger / Math.max(1, smaller);
+        assertTrue(String.format("%s grew %.1fx, limit is %.1fx", what, growth, limit), growth <= limit);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter;
+            }
+        }
+        return null;
+    }
+
+}
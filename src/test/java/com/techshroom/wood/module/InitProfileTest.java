@@ -0,0 +1,67 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.techshroom.wood.module.InitProfile.ModuleTiming;
+
+public class InitProfileTest {
+
+    private static ModuleTiming timing(long preInitMillis, long initMillis) {
+        return ModuleTiming.of(Duration.ofMillis(preInitMillis), Duration.ofMillis(initMillis));
+    }
+
+    @Test
+    public void roundTrips() throws Exception {
+        Path dir = Files.createTempDirectory("profile");
+        Path file = dir.resolve("init.profile");
+        try {
+            assertEquals(ImmutableMap.of(), InitProfile.load(file).getTimings());
+            InitProfile profile = InitProfile.of(ImmutableMap.of("a", timing(1, 2), "with space", timing(3, 4)));
+            profile.save(file);
+            assertEquals(profile.getTimings(), InitProfile.load(file).getTimings());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void mergeAveragesMeasuredModules() throws Exception {
+        InitProfile profile = InitProfile.of(ImmutableMap.of("a", timing(10, 20), "b", timing(5, 5)));
+        InitProfile merged = profile.merge(ImmutableMap.of("a", timing(30, 40), "c", timing(1, 1)));
+        assertEquals(ImmutableMap.of("b", timing(5, 5), "a", timing(20, 30), "c", timing(1, 1)),
+                merged.getTimings());
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class LazyActivationTest extends TestBase {
+
+    private final List<Module> preInits = new CopyOnWriteArrayList<>();
+    private final List<Module> inits = new CopyOnWriteArrayList<>();
+
+    private final Module eager = new ModuleBuilder("eager", "Eager", "1.0.0").build();
+    private final Module pulled = new ModuleBuilder("pulled", "Pulled", "1.0.0").setActivation(Activation.LAZY)
+            .build();
+    private final Module user = new ModuleBuilder("user", "User", "1.0.0").setRequired(require(this.pulled)).build();
+    private final Module lazyBase = new ModuleBuilder("lazyBase", "LazyBase", "1.0.0")
+            .setRequired(require(this.eager)).setActivation(Activation.LAZY).build();
+    private final Module lazyTop = new ModuleBuilder("lazyTop", "LazyTop", "1.0.0")
+            .setRequired(require(this.lazyBase)).setActivation(Activation.LAZY).build();
+
+    private LazyActivation activation() {
+        ModuleGraph graph =
+                ModuleGraph.solve(ImmutableList.of(this.eager, this.pulled, this.user, this.lazyBase, this.lazyTop));
+        return new LazyActivation(graph, this.preInits::add, this.inits::add);
+    }
+
+    @Test
+    public void dependenciesOfEagerModulesAreEager() throws Exception {
+        LazyActivation activation = activation();
+        assertTrue(activation.isEager(this.eager));
+        assertTrue(activation.isEager(this.pulled));
+        assertTrue(activation.isEager(this.user));
+        assertFalse(activation.isEager(this.lazyBase));
+        assertFalse(activation.isEager(this.lazyTop));
+    }
+
+    @Test
+    public void activatesOnceWithDependencies() throws Exception {
+        LazyActivation activation = activation();
+        activation.loadFinished();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Module>> lookups = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(executor.submit(() -> {
+                    start.await();
+                    return activation.activate(this.lazyTop);
+                }));
+            }
+            start.countDown();
+            for (Future<Module> lookup : lookups) {
+                assertSame(this.lazyTop, lookup.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(ImmutableList.of(this.lazyBase, this.lazyTop), this.preInits);
+        assertEquals(ImmutableList.of(this.lazyBase, this.lazyTop), this.inits);
+        activation.activate(this.lazyBase);
+        assertEquals(2, this.inits.size());
+    }
+
+    @Test
+    public void eagerLookupWaitsForLoad() throws Exception {
+        LazyActivation activation = activation();
+        // Load callbacks can't wait, their dependencies are already there
+        List<Module> found = new CopyOnWriteArrayList<>();
+        activation.loadCallback(m -> found.add(activation.activate(this.eager))).accept(this.user);
+        assertEquals(ImmutableList.of(this.eager), found);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Module> lookup = executor.submit(() -> activation.activate(this.eager));
+            Thread.sleep(100);
+            assertFalse(lookup.isDone());
+            activation.loadFinished();
+            assertSame(this.eager, lookup.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsLazyLookupDuringLoad() throws Exception {
+        LazyActivation activation = activation();
+        activation.loadCallback(m -> activation.activate(this.lazyTop)).accept(this.eager);
+    }
+
+    @Test
+    public void rejectsLazyLookupDuringBudgetedLoad() throws Exception {
+        LazyActivation activation = activation();
+        ModuleGraph graph = ModuleGraph.solve(ImmutableList.of(this.eager));
+        // The callback runs on a watchdog thread, which must see the check
+        LifecycleWatchdog watchdog =
+                new LifecycleWatchdog(graph::getDependencies, Duration.ofSeconds(30), null, BudgetPolicy.WARN);
+        Consumer<Module> init = ModuleLoader.guardLoadCallback(watchdog, activation, "init",
+                m -> activation.activate(this.lazyTop));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            watchdog.loadStarted();
+            // Without the check, the lookup waits for the load to finish
+            executor.submit(() -> init.accept(this.eager)).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(watchdog.isFailed(this.eager));
+        assertEquals(ImmutableList.of(), this.inits);
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.techshroom.wood.module.SyntheticModuleGraphs.Shape;
+
+public class LifecycleSchedulerTest extends TestBase {
+
+    private static ModuleGraph graph(List<Module> modules) {
+        Map<String, Module> map =
+                modules.stream().collect(Collectors.toMap(m -> m.getMetadata().getId(), Function.identity()));
+        return new ModuleDependencySolver(map).solve();
+    }
+
+    @Test
+    public void runsDependenciesFirst() throws Exception {
+        ModuleGraph graph = graph(SyntheticModuleGraphs.generate(Shape.RANDOM_DAG, 500, 42));
+        List<Module> finished = new CopyOnWriteArrayList<>();
+        try (LifecycleScheduler scheduler = new LifecycleScheduler(graph, 4)) {
+            long[] durations = scheduler.run(m -> 1, finished::add);
+            assertEquals(graph.size(), durations.length);
+        }
+        assertEquals(graph.size(), finished.size());
+        for (Module module : finished) {
+            int position = finished.indexOf(module);
+            for (Module dependency : graph.getDependencies(module)) {
+                assertTrue(finished.indexOf(dependency) < position);
+            }
+        }
+    }
+
+    @Test
+    public void startsCriticalPathFirst() throws Exception {
+        // Three quick independent modules, and a slow chain head -> tail
+        Module head = new ModuleBuilder("head", "head", "1.0.0").build();
+        Module tail = new ModuleBuilder("tail", "tail", "1.0.0").setRequired(require(head)).build();
+        List<Module> modules = Stream.of("a", "b", "c").map(id -> new ModuleBuilder(id, id, "1.0.0").build())
+                .collect(Collectors.toList());
+        modules.add(head);
+        modules.add(tail);
+        ModuleGraph graph = graph(modules);
+        List<Module> started = new CopyOnWriteArrayList<>();
+        // Holds the first two modules until both have started, so they are
+        // the first two the scheduler picked
+        CountDownLatch firstPair = new CountDownLatch(2);
+        try (LifecycleScheduler scheduler = new LifecycleScheduler(graph, 2)) {
+            scheduler.run(m -> m == head || m == tail ? 100 : 1, m -> {
+                started.add(m);
+                firstPair.countDown();
+                Uninterruptibles.awaitUninterruptibly(firstPair);
+            });
+        }
+        assertTrue(started.subList(0, 2).contains(head));
+    }
+
+    @Test
+    public void reverseRunsDependentsFirst() throws Exception {
+        ModuleGraph graph = graph(SyntheticModuleGraphs.generate(Shape.RANDOM_DAG, 500, 42));
+        List<Module> finished = new CopyOnWriteArrayList<>();
+        try (LifecycleScheduler scheduler = new LifecycleScheduler(graph, 4)) {
+            scheduler.runReverse(m -> 1, finished::add);
+        }
+        assertEquals(graph.size(), finished.size());
+        for (Module module : finished) {
+            int position = finished.indexOf(module);
+            for (Module dependent : graph.getDependents(module)) {
+                assertTrue(finished.indexOf(dependent) < position);
+            }
+        }
+    }
+
+    @Test
+    public void singleThreadKeepsDependencyOrder() throws Exception {
+        ModuleGraph graph = graph(SyntheticModuleGraphs.generate(Shape.DIAMOND, 50, 42));
+        List<Module> finished = new CopyOnWriteArrayList<>();
+        try (LifecycleScheduler scheduler = new LifecycleScheduler(graph, 1)) {
+            scheduler.run(m -> 1, finished::add);
+        }
+        assertEquals(graph.getDependencyOrder(), finished);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class LifecycleWatchdogTest extends TestBase {
+
+    private final Module a = new ModuleBuilder("a", "A", "1.0.0").build();
+    private final Module b = new ModuleBuilder("b", "B", "1.0.0").setRequired(require(this.a)).build();
+    private final Module c = new ModuleBuilder("c", "C", "1.0.0").setRequired(require(this.b)).build();
+    private final Module other = new ModuleBuilder("other", "Other", "1.0.0").build();
+    private final ModuleGraph graph = ModuleGraph.solve(ImmutableList.of(this.a, this.b, this.c, this.other));
+    private final List<Module> ran = new CopyOnWriteArrayList<>();
+
+    private void runAll(LifecycleWatchdog watchdog, Consumer<Module> callback) {
+        watchdog.loadStarted();
+        Consumer<Module> guarded = watchdog.guard("init", m -> {
+            this.ran.add(m);
+            callback.accept(m);
+        });
+        this.graph.getDependencyOrder().forEach(guarded);
+        watchdog.loadFinished();
+    }
+
+    @Test
+    public void failureSkipsTransitiveDependents() throws Exception {
+        LifecycleWatchdog watchdog = new LifecycleWatchdog(this.graph::getDependencies, null, null, BudgetPolicy.WARN);
+        runAll(watchdog, m -> {
+            if (m == this.a) {
+                throw new IllegalStateException("broken");
+            }
+        });
+        assertEquals(ImmutableSet.of(this.a, this.other), ImmutableSet.copyOf(this.ran));
+        assertEquals(ImmutableSet.of(this.a, this.b, this.c), watchdog.getFailed());
+    }
+
+    @Test
+    public void abandonsOverrunningModule() throws Exception {
+        LifecycleWatchdog watchdog =
+                new LifecycleWatchdog(this.graph::getDependencies, Duration.ofMillis(50), null, BudgetPolicy.ABANDON);
+        CountDownLatch hung = new CountDownLatch(1);
+        try {
+            runAll(watchdog, m -> {
+                if (m == this.b) {
+                    Uninterruptibles.awaitUninterruptibly(hung);
+                }
+            });
+            assertFalse(watchdog.getAbandoned(this.b).isDone());
+        } finally {
+            hung.countDown();
+        }
+        assertEquals(ImmutableSet.of(this.a, this.b, this.other), ImmutableSet.copyOf(this.ran));
+        assertEquals(ImmutableSet.of(this.b, this.c), watchdog.getFailed());
+        assertNull(watchdog.getAbandoned(this.a));
+        // Completes once the abandoned callback returns
+        watchdog.getAbandoned(this.b).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void warnsButWaitsForOverrunningModule() throws Exception {
+        LifecycleWatchdog watchdog =
+                new LifecycleWatchdog(this.graph::getDependencies, Duration.ofMillis(1), null, BudgetPolicy.WARN);
+        runAll(watchdog, m -> Uninterruptibles.sleepUninterruptibly(20, TimeUnit.MILLISECONDS));
+        assertEquals(4, this.ran.size());
+        assertEquals(ImmutableSet.of(), watchdog.getFailed());
+    }
+
+    @Test
+    public void exhaustedLoadBudgetSkipsRemainingModules() throws Exception {
+        LifecycleWatchdog watchdog =
+                new LifecycleWatchdog(this.graph::getDependencies, null, Duration.ZERO, BudgetPolicy.ABANDON);
+        runAll(watchdog, m -> {
+        });
+        assertEquals(ImmutableList.of(), this.ran);
+        assertEquals(4, watchdog.getFailed().size());
+    }
+
+}
@@ -41,6 +41,7 @@ class ModuleBuilder {
     private Set<ModuleDependency> loadAfter = ImmutableSet.of();
     private Set<ModuleDependency> loadBefore = ImmutableSet.of();
     private SemVer version;
+    private Activation activation = Activation.EAGER;
 
     ModuleBuilder(String id, String name, String ver) {
         this.id = id;
@@ -63,6 +64,11 @@ class ModuleBuilder {
         return this;
     }
 
+    public ModuleBuilder setActivation(Activation activation) {
+        this.activation = activation;
+        return this;
+    }
+
     ModuleMetadata buildMeta() {
 
         String id = this.id;
@@ -71,6 +77,7 @@ class ModuleBuilder {
         Set<ModuleDependency> loadAfter = this.loadAfter;
         Set<ModuleDependency> loadBefore = this.loadBefore;
         SemVer version = this.version;
+        Activation activation = this.activation;
         class MBSnapshot implements ModuleMetadata {
 
             @Override
@@ -103,6 +110,11 @@ class ModuleBuilder {
                 return version;
             }
 
+            @Override
+            public Activation getActivation() {
+                return activation;
+            }
+
         }
         return new MBSnapshot();
     }
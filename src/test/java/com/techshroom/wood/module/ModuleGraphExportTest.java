@@ -0,0 +1,89 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.techshroom.wood.module.InitProfile.ModuleTiming;
+
+public class ModuleGraphExportTest extends TestBase {
+
+    private final Module a = new ModuleBuilder("a", "A", "1.0.0").build();
+    private final Module b = new ModuleBuilder("b", "B", "1.0.0").setRequired(require(this.a)).build();
+    private final Module c = new ModuleBuilder("c", "C", "1.0.0").setRequired(require(this.a)).build();
+    private final Module d = new ModuleBuilder("d", "D", "1.0.0").setRequired(require(this.b, this.c)).build();
+
+    private static ModuleTiming millis(long preInit, long init) {
+        return ModuleTiming.of(Duration.ofMillis(preInit), Duration.ofMillis(init));
+    }
+
+    private ModuleGraphExport export() {
+        InitProfile profile = InitProfile.of(ImmutableMap.of("a", millis(5, 5), "b", millis(20, 30), "c",
+                millis(0, 5), "d", millis(10, 0)));
+        return ModuleGraphExport.of(ModuleGraph.solve(ImmutableList.of(this.d, this.c, this.b, this.a)), profile);
+    }
+
+    @Test
+    public void findsCriticalPathAndSlack() throws Exception {
+        ModuleGraphExport export = export();
+        assertEquals(ImmutableList.of(this.a, this.b, this.d), export.getCriticalPath());
+        assertEquals(Duration.ofMillis(70), export.getCriticalPathDuration());
+        assertEquals(Duration.ZERO, export.getSlack(this.b));
+        assertEquals(Duration.ofMillis(45), export.getSlack(this.c));
+        assertEquals(Duration.ofMillis(45), export.getTotalSlack());
+    }
+
+    @Test
+    public void exportsDotAndJson() throws Exception {
+        ModuleGraphExport export = export();
+        String dot = export.toDot();
+        assertTrue(dot, dot.contains("\"d\" -> \"b\" [color=red, penwidth=2];"));
+        assertTrue(dot, dot.contains("\"d\" -> \"c\";"));
+        assertTrue(dot, dot.contains("[label=\"c\\n1.0.0\\n5.000 ms, slack 45.000 ms\"];"));
+        String json = export.toJson();
+        assertTrue(json, json.contains("\"criticalPath\": [\"a\", \"b\", \"d\"]"));
+        assertTrue(json, json.contains("{\"id\": \"c\", \"version\": \"1.0.0\", \"weightNanos\": 5000000, "
+                + "\"slackNanos\": 45000000, \"critical\": false, \"dependencies\": [\"a\"]}"));
+    }
+
+    @Test
+    public void mainRejectsOptionWithoutValue() throws Exception {
+        try {
+            ModuleGraphExport.main(new String[] { "--format", "json", "--output" });
+            fail("expected an error");
+        } catch (IllegalArgumentException e) {
+            assertEquals("missing value for --output", e.getMessage());
+        }
+    }
+
+}
@@ -26,19 +26,31 @@ package com.techshroom.wood.module;
 
 import static org.junit.Assert.*;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 
 import com.google.auto.service.AutoService;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.techshroom.wood.module.AbstractModule.Meta;
 
 public class ModuleInjectTest extends TestBase {
 
+    private static final List<String> SHUTDOWN_ORDER = new CopyOnWriteArrayList<>();
+
     @AutoService(Module.class)
     @VisibleForTesting
     @Meta(id = "decl", name = "Decl", version = "1.0.0")
     public static final class DeclDep extends AbstractModule {
 
+        @Override
+        public void onShutdown() {
+            SHUTDOWN_ORDER.add(getMetadata().getId());
+        }
+
     }
 
     @AutoService(Module.class)
@@ -49,6 +61,18 @@ public class ModuleInjectTest extends TestBase {
         @Dependency("decl")
         private final DeclDep decl = null;
 
+        private volatile boolean warmedUp;
+
+        @Override
+        public void onWarmup() {
+            this.warmedUp = true;
+        }
+
+        @Override
+        public void onShutdown() {
+            SHUTDOWN_ORDER.add(getMetadata().getId());
+        }
+
     }
 
     @Test
@@ -58,4 +82,19 @@ public class ModuleInjectTest extends TestBase {
         assertNotNull(((Target) ModuleLoader.getAllModules().get("target")).decl);
     }
 
+    @Test
+    public void warmsUpAfterLoad() throws Exception {
+        ModuleLoader.load();
+        ModuleLoader.getWarmupFuture().get(10, TimeUnit.SECONDS);
+        assertTrue(((Target) ModuleLoader.getAllModules().get("target")).warmedUp);
+    }
+
+    @Test
+    public void shutsDownDependentsFirst() throws Exception {
+        ModuleLoader.load();
+        ModuleLoader.shutdown();
+        ModuleLoader.shutdown();
+        assertEquals(ImmutableList.of("target", "decl"), SHUTDOWN_ORDER);
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class ModuleShutdownTest extends TestBase {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final ExecutorService callbacks = Executors.newCachedThreadPool();
+    private final CountDownLatch warming = new CountDownLatch(1);
+    private final CountDownLatch releaseWarmup = new CountDownLatch(1);
+    private final AtomicBoolean warmingUp = new AtomicBoolean();
+    private final AtomicInteger warmups = new AtomicInteger();
+    private final AtomicInteger overlaps = new AtomicInteger();
+    private final AtomicInteger shutdowns = new AtomicInteger();
+    private final Module module = new Module() {
+
+        private final ModuleMetadata metadata = new ModuleBuilder("slow", "Slow", "1.0.0").build().getMetadata();
+
+        @Override
+        public ModuleMetadata getMetadata() {
+            return this.metadata;
+        }
+
+        @Override
+        public void onWarmup() {
+            ModuleShutdownTest.this.warmups.incrementAndGet();
+            ModuleShutdownTest.this.warmingUp.set(true);
+            ModuleShutdownTest.this.warming.countDown();
+            Uninterruptibles.awaitUninterruptibly(ModuleShutdownTest.this.releaseWarmup, 10, TimeUnit.SECONDS);
+            ModuleShutdownTest.this.warmingUp.set(false);
+        }
+
+        @Override
+        public void onShutdown() {
+            if (ModuleShutdownTest.this.warmingUp.get()) {
+                ModuleShutdownTest.this.overlaps.incrementAndGet();
+            }
+            ModuleShutdownTest.this.shutdowns.incrementAndGet();
+        }
+
+    };
+
+    @After
+    public void tearDown() {
+        this.releaseWarmup.countDown();
+        this.callbacks.shutdownNow();
+    }
+
+    @Test
+    public void waitsForRunningWarmup() throws Exception {
+        ModuleLoader.Warmup warmup = new ModuleLoader.Warmup(this.module);
+        CompletableFuture.runAsync(warmup, this.callbacks);
+        assertTrue(this.warming.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Void> shutdown = CompletableFuture.runAsync(
+                () -> ModuleLoader.shutdown(this.module, null, warmup, this.callbacks, TIMEOUT_NANOS), this.callbacks);
+        Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+        assertFalse(shutdown.isDone());
+        assertEquals(0, this.shutdowns.get());
+        this.releaseWarmup.countDown();
+        shutdown.get(10, TimeUnit.SECONDS);
+        assertEquals(1, this.shutdowns.get());
+        assertEquals(0, this.overlaps.get());
+    }
+
+    @Test
+    public void skipsWarmupNotStarted() throws Exception {
+        ModuleLoader.Warmup warmup = new ModuleLoader.Warmup(this.module);
+        ModuleLoader.shutdown(this.module, null, warmup, this.callbacks, TIMEOUT_NANOS);
+        warmup.run();
+        assertEquals(1, this.shutdowns.get());
+        assertEquals(0, this.warmups.get());
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class ModulesTest extends TestBase {
+
+    private Path dir;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        this.dir = Files.createTempDirectory("descriptors");
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdownNow();
+        try (Stream<Path> files = Files.list(this.dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.dir);
+    }
+
+    private Path descriptor(String name, String text) throws Exception {
+        return Files.write(this.dir.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void loadManyCollectingErrors() throws Exception {
+        List<Path> sources = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sources.add(descriptor("good" + i, "id=m" + i + "\nname=M" + i + "\nversion=1.0." + i
+                    + "\nloadAfter=\nloadBefore=\nrequired=\n"));
+        }
+        Path badVersion = descriptor("badVersion", "id=b\nname=B\nversion=1.0\nloadAfter=\nloadBefore=\nrequired=\n");
+        Path badSyntax = descriptor("badSyntax", "-id=c\n");
+        Path missing = this.dir.resolve("missing");
+        sources.add(5, badVersion);
+        sources.add(missing);
+        sources.add(badSyntax);
+        Modules.MetadataLoadResult result = Modules.getModuleMetadataFromPaths(sources, this.executor);
+        assertEquals(20, result.getMetadata().size());
+        assertEquals("m0", result.getMetadata().get(0).getId());
+        assertEquals("m19", result.getMetadata().get(19).getId());
+        assertEquals(ImmutableSet.of(badVersion.toUri().toString(), badSyntax.toUri().toString(),
+                missing.toUri().toString()), result.getErrors().keySet());
+    }
+
+    @Test
+    public void loadNothing() throws Exception {
+        Modules.MetadataLoadResult result = Modules.getModuleMetadataFromPaths(ImmutableList.of(), this.executor);
+        assertEquals(ImmutableList.of(), result.getMetadataOrThrow());
+    }
+
+    @Test
+    public void keepErrorsForSamePathInTwoJars() throws Exception {
+        List<FileSystem> jars = new ArrayList<>();
+        try {
+            List<Path> sources = new ArrayList<>();
+            for (String name : ImmutableList.of("a.jar", "b.jar")) {
+                URI uri = URI.create("jar:" + this.dir.resolve(name).toUri());
+                FileSystem jar = FileSystems.newFileSystem(uri, ImmutableMap.of("create", "true"));
+                jars.add(jar);
+                Path source = jar.getPath("/module.properties");
+                Files.write(source, "-id=broken\n".getBytes(StandardCharsets.UTF_8));
+                sources.add(source);
+            }
+            // Both paths have the same toString()
+            Modules.MetadataLoadResult result = Modules.getModuleMetadataFromPaths(sources, this.executor);
+            assertEquals(2, result.getErrors().size());
+        } finally {
+            for (FileSystem jar : jars) {
+                jar.close();
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectDuplicateUrls() throws Exception {
+        URL source = descriptor("dup", "id=d\nname=D\nversion=1.0.0\nloadAfter=\nloadBefore=\nrequired=\n").toUri()
+                .toURL();
+        Modules.getModuleMetadataFromUrls(ImmutableList.of(source, new URL(source.toExternalForm())), this.executor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectDuplicateSources() throws Exception {
+        Path source = descriptor("dup", "id=d\nname=D\nversion=1.0.0\nloadAfter=\nloadBefore=\nrequired=\n");
+        Modules.getModuleMetadataFromPaths(ImmutableList.of(source, source), this.executor);
+    }
+
+}
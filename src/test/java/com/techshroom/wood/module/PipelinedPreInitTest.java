@@ -0,0 +1,82 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class PipelinedPreInitTest extends TestBase {
+
+    private final List<Module> ran = new CopyOnWriteArrayList<>();
+
+    private PipelinedPreInit pipeline() {
+        return new PipelinedPreInit(4, this.ran::add);
+    }
+
+    @Test
+    public void dependencyDiscoveredLaterRunsFirst() throws Exception {
+        Module a = new ModuleBuilder("a", "A", "1.0.0").build();
+        Module b = new ModuleBuilder("b", "B", "1.0.0").setRequired(require(a)).build();
+        Module c = new ModuleBuilder("c", "C", "1.0.0").setRequired(require(b)).build();
+        PipelinedPreInit pipeline = pipeline();
+        pipeline.discovered(c);
+        pipeline.discovered(b);
+        pipeline.discovered(a);
+        ImmutableMap<Module, Long> durations = pipeline.finish();
+        assertEquals(ImmutableList.of(a, b, c), this.ran);
+        assertEquals(ImmutableSet.of(a, b, c), durations.keySet());
+        assertTrue(pipeline.finishedBefore(a, b));
+        assertTrue(pipeline.finishedBefore(b, c));
+    }
+
+    @Test
+    public void leavesIneligibleModulesForLater() throws Exception {
+        Module a = new ModuleBuilder("a", "A", "1.0.0").build();
+        Module lazy = new ModuleBuilder("lazy", "Lazy", "1.0.0").setActivation(Activation.LAZY).build();
+        Module missing = new ModuleBuilder("missing", "Missing", "1.0.0")
+                .setRequired(require(new ModuleBuilder("gone", "Gone", "1.0.0").build())).build();
+        Module mismatch = new ModuleBuilder("mismatch", "Mismatch", "1.0.0")
+                .setRequired(require(new ModuleBuilder("a", "A", "2.0.0").build())).build();
+        Module onLazy = new ModuleBuilder("onLazy", "On Lazy", "1.0.0").setRequired(require(lazy)).build();
+        PipelinedPreInit pipeline = pipeline();
+        for (Module module : ImmutableList.of(mismatch, a, lazy, missing, onLazy)) {
+            pipeline.discovered(module);
+        }
+        assertEquals(ImmutableSet.of(a), pipeline.finish().keySet());
+        assertEquals(ImmutableList.of(a), this.ran);
+        assertFalse(pipeline.finishedBefore(a, mismatch));
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.techshroom.wood.module.AbstractModule.Meta;
+
+public class PluginDirectoryTest extends TestBase {
+
+    private static final String DESCRIPTOR = "id=plugin\nname=Plugin\nversion=1.0.0\nloadAfter=\nloadBefore=\n"
+            + "required=decl\n";
+
+    @VisibleForTesting
+    @Meta(id = "plugin", name = "Plugin", version = "1.0.0", required = "decl")
+    public static final class PluginModule extends AbstractModule {
+    }
+
+    private static void writeJar(Path jar, String... entries) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    public void scansServicesAndDescriptors() throws Exception {
+        Path dir = Files.createTempDirectory("plugins");
+        try {
+            writeJar(dir.resolve("b.jar"), PluginDirectory.SERVICE_ENTRY,
+                    "# plugins\n" + PluginModule.class.getName() + " # the plugin\n\n",
+                    PluginDirectory.DESCRIPTOR_DIRECTORY + "/plugin.properties", DESCRIPTOR);
+            writeJar(dir.resolve("a.jar"), "readme.txt", "no modules here");
+            try (OutputStream broken = Files.newOutputStream(dir.resolve("broken.jar"))) {
+                broken.write(new byte[] { 1, 2, 3 });
+            }
+            Files.write(dir.resolve("notes.txt"), ImmutableList.of("ignored"));
+
+            try (PluginDirectory plugins = PluginDirectory.scan(dir, 4)) {
+                assertEquals(ImmutableList.of(dir.resolve("a.jar"), dir.resolve("b.jar")),
+                        plugins.getJars().stream().map(PluginDirectory.PluginJar::getPath)
+                                .collect(Collectors.toList()));
+                assertEquals(ImmutableList.of(dir.resolve("broken.jar").toString()),
+                        plugins.getErrors().keySet().asList());
+                assertEquals(ImmutableList.of(Modules.getModuleMetadata(new ByteArrayInputStream(
+                        DESCRIPTOR.getBytes(StandardCharsets.UTF_8)))), plugins.getDescriptors());
+                List<Module> modules = plugins.loadModules();
+                assertEquals(1, modules.size());
+                assertTrue(modules.get(0) instanceof PluginModule);
+                assertEquals("plugin", modules.get(0).getMetadata().getId());
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * This file is part of WoodPilings, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.techshroom.wood.module;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+import com.techshroom.wood.ModuleDependency;
+import com.techshroom.wood.SemVer;
+
+/**
+ * Generates large, seeded module graphs for solver tests and benchmarks. The
+ * same shape, size and seed always produce the same modules, in the same
+ * (shuffled) order.
+ */
+public final class SyntheticModuleGraphs {
+
+    // Public for the JMH generated code, which sets @Param fields of this type
+    public enum Shape {
+        /** Each module requires the one before it. */
+        CHAIN,
+        /** Every module requires a single root. */
+        FAN_OUT,
+        /** Stacked diamonds: two sides require a top, a bottom requires both. */
+        DIAMOND,
+        /** No dependencies at all. */
+        INDEPENDENT,
+        /** Each module requires a few random earlier modules. */
+        RANDOM_DAG,
+        /**
+         * A random DAG with mixed versions, open and closed ranges, soft
+         * ordering and dependencies on absent modules.
+         */
+        RANGE_HEAVY,
+        /** A random DAG with a single cycle of at least three modules. */
+        CYCLIC;
+    }
+
+    private static final int MAX_RANDOM_DEPS = 4;
+
+    static ImmutableList<Module> generate(Shape shape, int size, long seed) {
+        return new SyntheticModuleGraphs(size, seed).generate(shape);
+    }
+
+    private final int size;
+    private final Random random;
+    private final SemVer[] versions;
+    private final List<Set<ModuleDependency>> required;
+    private final List<Set<ModuleDependency>> loadAfter;
+    private final List<Set<ModuleDependency>> loadBefore;
+
+    private SyntheticModuleGraphs(int size, long seed) {
+        this.size = size;
+        this.random = new Random(seed);
+        this.versions = new SemVer[size];
+        this.required = newSets(size);
+        this.loadAfter = newSets(size);
+        this.loadBefore = newSets(size);
+    }
+
+    private static List<Set<ModuleDependency>> newSets(int size) {
+        List<Set<ModuleDependency>> sets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sets.add(new HashSet<>());
+        }
+        return sets;
+    }
+
+    private static String id(int index) {
+        return "m" + index;
+    }
+
+    private ImmutableList<Module> generate(Shape shape) {
+        SemVer one = SemVer.fromFields(1, 0, 0, null, null);
+        for (int i = 0; i < this.size; i++) {
+            this.versions[i] = shape == Shape.RANGE_HEAVY
+                    ? SemVer.fromFields(1 + this.random.nextInt(5), this.random.nextInt(10), this.random.nextInt(10),
+                            null, null)
+                    : one;
+        }
+        switch (shape) {
+            case CHAIN:
+                for (int i = 1; i < this.size; i++) {
+                    requireExact(i, i - 1);
+                }
+                break;
+            case FAN_OUT:
+                for (int i = 1; i < this.size; i++) {
+                    requireExact(i, 0);
+                }
+                break;
+            case DIAMOND:
+                // 0 is the top, 1 and 2 are the sides, 3 is the bottom and
+                // the top of the next diamond
+                for (int i = 1; i < this.size; i++) {
+                    switch (i % 3) {
+                        case 1:
+                        case 2:
+                            requireExact(i, i - 1 - (i - 1) % 3);
+                            break;
+                        default:
+                            requireExact(i, i - 1);
+                            requireExact(i, i - 2);
+                            break;
+                    }
+                }
+                break;
+            case INDEPENDENT:
+                break;
+            case RANDOM_DAG:
+                randomDag(false);
+                break;
+            case RANGE_HEAVY:
+                randomDag(true);
+                break;
+            case CYCLIC:
+                randomDag(false);
+                addCycle();
+                break;
+            default:
+                throw new AssertionError(shape);
+        }
+        List<Module> modules = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            modules.add(new ModuleBuilder(id(i), id(i), this.versions[i].toString())
+                    .setRequired(ImmutableSet.copyOf(this.required.get(i)))
+                    .setLoadAfter(ImmutableSet.copyOf(this.loadAfter.get(i)))
+                    .setLoadBefore(ImmutableSet.copyOf(this.loadBefore.get(i))).build());
+        }
+        // The solver must not rely on modules arriving in order
+        Collections.shuffle(modules, this.random);
+        return ImmutableList.copyOf(modules);
+    }
+
+    private void requireExact(int dependent, int dependency) {
+        this.required.get(dependent)
+                .add(ModuleDependency.fromFields(id(dependency), Range.singleton(this.versions[dependency])));
+    }
+
+    private void randomDag(boolean ranges) {
+        // Module 0 always has no dependencies, so there is at least one root
+        for (int i = 1; i < this.size; i++) {
+            int deps = this.random.nextInt(MAX_RANDOM_DEPS + 1);
+            for (int d = 0; d < deps; d++) {
+                int target = this.random.nextInt(i);
+                if (ranges) {
+                    this.required.get(i).add(ModuleDependency.fromString(id(target) + ':' + rangeFor(target)));
+                } else {
+                    requireExact(i, target);
+                }
+            }
+            if (!ranges) {
+                continue;
+            }
+            // Soft ordering that agrees with the required edges
+            if (this.random.nextInt(4) == 0) {
+                this.loadAfter.get(i).add(ModuleDependency.fromString(id(this.random.nextInt(i)) + ":*"));
+            }
+            if (this.random.nextInt(4) == 0) {
+                int earlier = this.random.nextInt(i);
+                this.loadBefore.get(earlier).add(ModuleDependency.fromString(id(i) + ':' + rangeFor(i)));
+            }
+            // Soft ordering against modules that are not present
+            if (this.random.nextInt(8) == 0) {
+                this.loadAfter.get(i).add(ModuleDependency.fromString("absent" + i + ":[1.0.0,)"));
+            }
+        }
+    }
+
+    private String rangeFor(int target) {
+        SemVer v = this.versions[target];
+        switch (this.random.nextInt(5)) {
+            case 0:
+                return "[" + v.getMajor() + ".0.0," + (v.getMajor() + 1) + ".0.0)";
+            case 1:
+                return "[" + v.getMajor() + "." + v.getMinor() + ".0,)";
+            case 2:
+                return "(," + (v.getMajor() + 1) + ".0.0)";
+            case 3:
+                return "[" + v + "," + v + "]";
+            default:
+                return "*";
+        }
+    }
+
+    private void addCycle() {
+        // Needs room for a cycle of 3 that leaves module 0 as a root
+        if (this.size < 4) {
+            throw new IllegalArgumentException("Cyclic graphs need at least 4 modules");
+        }
+        int length = 3 + this.random.nextInt(Math.min(8, this.size - 3));
+        int base = 1 + this.random.nextInt(this.size - length);
+        for (int i = base + 1; i < base + length; i++) {
+            requireExact(i, i - 1);
+        }
+        requireExact(base, base + length - 1);
+    }
+
+}